@@ -0,0 +1,40 @@
+package com.detoxie;
+
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.util.List;
+
+// A detector's anchors resolved by the framework on the live window, via
+// findAccessibilityNodeInfosByViewId, so a deciding anchor costs no capture.
+// Kept out of ScreenClassifier, which builds without the Android framework.
+final class AnchorProbe {
+    private AnchorProbe() {}
+
+    // Same decision as ScreenClassifier's anchor pass. Returns null when no
+    // anchor decides, and the caller captures the window for classify().
+    // Recycles the nodes it finds, never root.
+    static ScreenClassifier.Result probe(ScreenClassifier.Anchor[] anchors, AccessibilityNodeInfo root) {
+        int visited = 0;
+        boolean selectableAnchorIdle = false;
+        for (ScreenClassifier.Anchor anchor : anchors) {
+            List<AccessibilityNodeInfo> found = root.findAccessibilityNodeInfosByViewId(anchor.viewId);
+            if (found == null || found.isEmpty()) continue;
+
+            boolean matched = false;
+            for (AccessibilityNodeInfo node : found) {
+                visited++;
+                if (!matched && (!anchor.requireSelected || node.isSelected())) {
+                    matched = true;
+                }
+                node.recycle();
+            }
+            if (matched) {
+                return new ScreenClassifier.Result(true, true, -1, visited, 0, false);
+            }
+            if (anchor.requireSelected) {
+                selectableAnchorIdle = true;
+            }
+        }
+        return selectableAnchorIdle ? new ScreenClassifier.Result(false, true, -1, visited, 0, false) : null;
+    }
+}
@@ -0,0 +1,137 @@
+package com.detoxie;
+
+// Accumulates status, time and stats changes between flushes and reports only
+// the fields that differ from what was last delivered, plus the ordered list
+// of status transitions. One flush becomes one ContentBatch event on the JS side.
+// Written by the service worker, flushed from the main thread.
+public class ContentBatcher {
+    public static final int FIELD_PLATFORM = 1;
+    public static final int FIELD_TOTAL_TIME = 1 << 1;
+    public static final int FIELD_SESSION_TIME = 1 << 2;
+    public static final int FIELD_INSTAGRAM_TODAY = 1 << 3;
+    public static final int FIELD_YOUTUBE_TODAY = 1 << 4;
+    public static final int FIELD_SESSION_COUNT = 1 << 5;
+    public static final int FIELD_LAST_SESSION_DATE = 1 << 6;
+    public static final int ALL_FIELDS = (1 << 7) - 1;
+
+    public interface Writer {
+        // Called once per flush; statuses are delivered before the writer returns
+        void beginBatch(long sequence, int changedFields, ContentBatcher values);
+
+        void status(String status);
+
+        void endBatch(int droppedStatuses);
+    }
+
+    private final PendingEventBuffer<String> statuses;
+
+    // Current values
+    private String platform;
+    private long totalTimeMs;
+    private long sessionTimeMs;
+    private long instagramTodayMs;
+    private long youtubeTodayMs;
+    private int sessionCount;
+    private String lastSessionDate;
+    private int changed;
+
+    private long sequence;
+
+    public ContentBatcher(int statusCapacity) {
+        this.statuses = new PendingEventBuffer<>(statusCapacity);
+    }
+
+    // All mutators return true when this call turned a clean batcher dirty,
+    // i.e. the caller should schedule a flush
+
+    public synchronized boolean onStatus(String status, String platform, long totalTimeMs) {
+        boolean wasClean = isClean();
+        statuses.append(status);
+        if (platform != null) setPlatform(platform);
+        setTotalTime(totalTimeMs);
+        return wasClean;
+    }
+
+    public synchronized boolean onTimeUpdate(long sessionTimeMs, long totalTimeMs, String platform,
+                                             long instagramTodayMs, long youtubeTodayMs) {
+        boolean wasClean = isClean();
+        if (this.sessionTimeMs != sessionTimeMs) {
+            this.sessionTimeMs = sessionTimeMs;
+            changed |= FIELD_SESSION_TIME;
+        }
+        if (platform != null) setPlatform(platform);
+        setTotalTime(totalTimeMs);
+        setPlatformTotals(instagramTodayMs, youtubeTodayMs);
+        return wasClean && !isClean();
+    }
+
+    public synchronized boolean onStats(long totalTimeMs, int sessionCount, String lastSessionDate,
+                                        String platform, long instagramTodayMs, long youtubeTodayMs) {
+        boolean wasClean = isClean();
+        setTotalTime(totalTimeMs);
+        if (this.sessionCount != sessionCount) {
+            this.sessionCount = sessionCount;
+            changed |= FIELD_SESSION_COUNT;
+        }
+        if (lastSessionDate != null && !lastSessionDate.equals(this.lastSessionDate)) {
+            this.lastSessionDate = lastSessionDate;
+            changed |= FIELD_LAST_SESSION_DATE;
+        }
+        if (platform != null) setPlatform(platform);
+        setPlatformTotals(instagramTodayMs, youtubeTodayMs);
+        return wasClean && !isClean();
+    }
+
+    // Writes the pending delta. With fullState every known field is reported,
+    // used when a fresh JS context attaches and has nothing to apply deltas to.
+    public synchronized boolean flush(Writer writer, boolean fullState) {
+        int fields = fullState ? ALL_FIELDS : changed;
+        if (fields == 0 && statuses.isEmpty()) return false;
+
+        sequence++;
+        writer.beginBatch(sequence, fields, this);
+        int dropped = statuses.getOverwritten();
+        statuses.drain(writer::status);
+        writer.endBatch(dropped);
+        changed = 0;
+        return true;
+    }
+
+    private boolean isClean() {
+        return changed == 0 && statuses.isEmpty();
+    }
+
+    private void setPlatform(String platform) {
+        if (!platform.equals(this.platform)) {
+            this.platform = platform;
+            changed |= FIELD_PLATFORM;
+        }
+    }
+
+    private void setTotalTime(long totalTimeMs) {
+        if (this.totalTimeMs != totalTimeMs) {
+            this.totalTimeMs = totalTimeMs;
+            changed |= FIELD_TOTAL_TIME;
+        }
+    }
+
+    private void setPlatformTotals(long instagramTodayMs, long youtubeTodayMs) {
+        if (this.instagramTodayMs != instagramTodayMs) {
+            this.instagramTodayMs = instagramTodayMs;
+            changed |= FIELD_INSTAGRAM_TODAY;
+        }
+        if (this.youtubeTodayMs != youtubeTodayMs) {
+            this.youtubeTodayMs = youtubeTodayMs;
+            changed |= FIELD_YOUTUBE_TODAY;
+        }
+    }
+
+    // Value accessors for the Writer; only meaningful inside beginBatch
+    public String getPlatform() { return platform; }
+    public long getTotalTimeMs() { return totalTimeMs; }
+    public long getSessionTimeMs() { return sessionTimeMs; }
+    public long getInstagramTodayMs() { return instagramTodayMs; }
+    public long getYoutubeTodayMs() { return youtubeTodayMs; }
+    public int getSessionCount() { return sessionCount; }
+    public String getLastSessionDate() { return lastSessionDate; }
+}
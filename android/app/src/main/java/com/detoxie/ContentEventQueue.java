@@ -0,0 +1,70 @@
+package com.detoxie;
+
+import android.os.Handler;
+import android.os.Looper;
+
+// The service's event sink: folds every report into one ContentBatcher and,
+// on the first change after a flush, runs the attached deliverer a frame
+// later on the main thread. The module attaches itself as deliverer once
+// React Native is up; until then (or with no app at all) the batcher just
+// keeps accumulating for the next drain.
+public final class ContentEventQueue implements ContentEventSink {
+    private static final int PENDING_STATUS_CAPACITY = 64;
+    private static final long BATCH_INTERVAL_MS = 16;
+
+    private static final ContentEventQueue INSTANCE = new ContentEventQueue();
+
+    private final ContentBatcher batcher = new ContentBatcher(PENDING_STATUS_CAPACITY);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable deliver = this::deliver;
+    private volatile Runnable deliverer;
+
+    private ContentEventQueue() {}
+
+    public static ContentEventQueue get() {
+        return INSTANCE;
+    }
+
+    public ContentBatcher getBatcher() {
+        return batcher;
+    }
+
+    // Runs on the main thread; null detaches
+    public void setDeliverer(Runnable deliverer) {
+        this.deliverer = deliverer;
+    }
+
+    @Override
+    public void onStatus(String status, String platform, long totalTimeMs) {
+        if (batcher.onStatus(status, platform, totalTimeMs)) {
+            scheduleDelivery();
+        }
+    }
+
+    @Override
+    public void onTimeUpdate(long sessionTimeMs, long totalTimeMs, String platform,
+                             long instagramTodayMs, long youtubeTodayMs) {
+        if (batcher.onTimeUpdate(sessionTimeMs, totalTimeMs, platform, instagramTodayMs, youtubeTodayMs)) {
+            scheduleDelivery();
+        }
+    }
+
+    @Override
+    public void onStats(long totalTimeMs, int sessionCount, String lastSessionDate,
+                        String platform, long instagramTodayMs, long youtubeTodayMs) {
+        if (batcher.onStats(totalTimeMs, sessionCount, lastSessionDate, platform, instagramTodayMs, youtubeTodayMs)) {
+            scheduleDelivery();
+        }
+    }
+
+    private void scheduleDelivery() {
+        mainHandler.postDelayed(deliver, BATCH_INTERVAL_MS);
+    }
+
+    private void deliver() {
+        Runnable target = deliverer;
+        if (target != null) {
+            target.run();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.detoxie;
+
+// What the service reports for the UI. Implementations must not depend on
+// React Native, so the service never loads React classes. Called on the
+// service worker thread.
+public interface ContentEventSink {
+    void onStatus(String status, String platform, long totalTimeMs);
+
+    void onTimeUpdate(long sessionTimeMs, long totalTimeMs, String platform,
+                      long instagramTodayMs, long youtubeTodayMs);
+
+    void onStats(long totalTimeMs, int sessionCount, String lastSessionDate,
+                 String platform, long instagramTodayMs, long youtubeTodayMs);
+}
@@ -4,6 +4,7 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.graphics.Color;
 import android.net.Uri;
 import android.provider.Settings;
 import android.text.TextUtils;
@@ -14,25 +15,36 @@ import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 import com.facebook.react.module.annotations.ReactModule;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
 @ReactModule(name = ContentMonitorModule.NAME)
 public class ContentMonitorModule extends ReactContextBaseJavaModule {
     public static final String NAME = "ContentMonitorModule";
     private static final String TAG = "ContentMonitorModule";
     private static final String PREFS_NAME = "ContentMonitorPrefs";
-    private static ContentMonitorModule instance;
-    private ReadableMap overlayConfig;
-    // Explicit fields for quick access
-    private int timerMinutes = 5;
-    private boolean isVacationMode = false;
+    private static volatile ContentMonitorModule instance;
+
+    // The service reports into ContentEventQueue, which folds status, time and
+    // stats changes into one ContentBatch per frame and hands them to flushBatch.
+    // While JS isn't listening the batcher just keeps accumulating until drainPendingEvents.
+    private static final ContentBatcher batcher = ContentEventQueue.get().getBatcher();
+
+    private boolean listenersAttached = false; // guarded by batcher
+    private int listenerCount = 0;
 
     public ContentMonitorModule(ReactApplicationContext reactContext) {
         super(reactContext);
         instance = this;
+        ContentEventQueue.get().setDeliverer(ContentMonitorModule::flushBatch);
     }
 
     @Override
@@ -47,12 +59,15 @@ public class ContentMonitorModule extends ReactContextBaseJavaModule {
     @ReactMethod
     public void configureOverlay(ReadableMap config, Promise promise) {
         try {
-            this.overlayConfig = config;
-            if (config != null) {
-                if (config.hasKey("timerMinutes")) {
-                    try { this.timerMinutes = config.getInt("timerMinutes"); } catch (Exception ignored) {}
-                }
+            OverlayConfig previous = OverlayConfig.get();
+            if (previous == OverlayConfig.DEFAULT) {
+                // Service not started in this process yet; pick up the persisted snapshot
+                previous = OverlayConfig.load(getReactApplicationContext().getFilesDir());
             }
+            OverlayConfig snapshot = parseOverlayConfig(config, previous);
+            snapshot.save(getReactApplicationContext().getFilesDir());
+            OverlayConfig.set(snapshot);
+            ContentMonitorService.onLimitSettingsChanged();
             promise.resolve("Overlay configured successfully");
             Log.d(TAG, "Overlay configuration updated");
         } catch (Exception e) {
@@ -61,16 +76,83 @@ public class ContentMonitorModule extends ReactContextBaseJavaModule {
         }
     }
 
-    public ReadableMap getOverlayConfig() {
-        return overlayConfig;
-    }
+    // Parses the JS map once into a typed snapshot. The image is only decoded
+    // and rewritten when its content changed since the previous snapshot.
+    private OverlayConfig parseOverlayConfig(ReadableMap config, OverlayConfig previous) throws java.io.IOException {
+        int backgroundColor = OverlayConfig.DEFAULT_BACKGROUND_COLOR;
+        String title = OverlayConfig.DEFAULT_TITLE;
+        String buttonText = OverlayConfig.DEFAULT_BUTTON_TEXT;
+        long limitMs = OverlayConfig.DEFAULT_LIMIT_MS;
+        java.util.List<String> todos = new java.util.ArrayList<>();
+        String visionBase64 = null;
 
-    public int getTimerMinutes() { return timerMinutes; }
+        if (config != null) {
+            if (config.hasKey("backgroundColor")) {
+                try { backgroundColor = Color.parseColor(config.getString("backgroundColor")); } catch (Exception ignored) {}
+            }
+            if (config.hasKey("title") && !config.isNull("title")) {
+                title = config.getString("title");
+            }
+            if (config.hasKey("buttonText") && !config.isNull("buttonText")) {
+                buttonText = config.getString("buttonText");
+            }
+            if (config.hasKey("timerMinutes")) {
+                try {
+                    int min = config.getInt("timerMinutes");
+                    if (min > 0) limitMs = min * 60L * 1000L;
+                } catch (Exception ignored) {}
+            }
+            if (config.hasKey("todos")) {
+                try {
+                    ReadableArray todosArray = config.getArray("todos");
+                    for (int i = 0; todosArray != null && i < todosArray.size(); i++) {
+                        try { todos.add(todosArray.getString(i)); } catch (Exception ignored) {}
+                    }
+                } catch (Exception ignored) {}
+            }
+            if (config.hasKey("visionBase64")) {
+                try { visionBase64 = config.getString("visionBase64"); } catch (Exception ignored) {}
+            }
+        }
+
+        java.io.File dir = getReactApplicationContext().getFilesDir();
+        int imageVersion = previous.imageVersion;
+        int imageHash = 0;
+        String imagePath = null;
+        if (visionBase64 != null && !visionBase64.isEmpty()) {
+            imageHash = visionBase64.hashCode();
+            if (previous.hasImage() && previous.imageHash == imageHash) {
+                imagePath = previous.imagePath;
+            } else {
+                try {
+                    byte[] decoded = android.util.Base64.decode(visionBase64, android.util.Base64.DEFAULT);
+                    imagePath = OverlayConfig.saveImage(dir, decoded);
+                } catch (IllegalArgumentException e) {
+                    Log.w(TAG, "Ignoring malformed vision image", e);
+                    imageHash = 0;
+                    // The config is saved without an image, so the old file is stale
+                    OverlayConfig.deleteImage(dir);
+                }
+                imageVersion++;
+            }
+        } else if (previous.hasImage()) {
+            OverlayConfig.deleteImage(dir);
+            imageVersion++;
+        }
+
+        return new OverlayConfig(previous.version + 1, imageVersion, imageHash, backgroundColor,
+            title, buttonText, limitMs, todos.toArray(new String[0]), imagePath);
+    }
 
     @ReactMethod
     public void setVacationMode(boolean isVacationMode, Promise promise) {
         try {
-            this.isVacationMode = isVacationMode;
+            // Persisted so the service honours it after a reboot, before the app runs
+            getReactApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putBoolean(ContentMonitorService.VACATION_MODE_KEY, isVacationMode)
+                .apply();
+            ContentMonitorService.setVacationMode(isVacationMode);
             promise.resolve("Vacation mode updated successfully");
             Log.d(TAG, "Vacation mode set to: " + isVacationMode);
         } catch (Exception e) {
@@ -79,41 +161,302 @@ public class ContentMonitorModule extends ReactContextBaseJavaModule {
         }
     }
 
-    public boolean isVacationMode() { return isVacationMode; }
-
+    // Prefs are only flushed periodically, so a running service answers from its
+    // live counters; they match what the ContentBatch totals report
     @ReactMethod
     public void getPlatformStats(Promise promise) {
         try {
-            SharedPreferences prefs = getReactApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+            ContentMonitorService.CounterReader resolve = (instagramTodayMs, youtubeTodayMs, totalTodayMs,
+                                                            totalTimeMs, sessionCount, lastSessionDate) -> {
+                WritableMap stats = Arguments.createMap();
+                stats.putDouble("instagramTimeToday", instagramTodayMs / 1000.0);
+                stats.putDouble("youtubeTimeToday", youtubeTodayMs / 1000.0);
+                stats.putDouble("totalTimeToday", totalTodayMs / 1000.0);
+                stats.putDouble("totalTimeAllTime", totalTimeMs / 1000.0);
+                stats.putInt("sessionCount", sessionCount);
+                stats.putString("lastSessionDate", lastSessionDate != null ? lastSessionDate : "");
+                promise.resolve(stats);
+            };
+            if (ContentMonitorService.readCounters(resolve)) return;
 
-            WritableMap stats = Arguments.createMap();
-            stats.putDouble("instagramTimeToday", prefs.getLong("instagram_daily_ms", 0) / 1000.0);
-            stats.putDouble("youtubeTimeToday", prefs.getLong("youtube_daily_ms", 0) / 1000.0);
-            stats.putDouble("totalTimeToday", prefs.getLong("daily_accumulated_ms", 0) / 1000.0);
-            stats.putDouble("totalTimeAllTime", prefs.getLong("total_time_spent", 0) / 1000.0);
-            stats.putInt("sessionCount", prefs.getInt("session_count", 0));
-            stats.putString("lastSessionDate", prefs.getString("last_session_date", ""));
-
-            promise.resolve(stats);
+            SharedPreferences prefs = getReactApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+            resolve.onCounters(prefs.getLong("instagram_daily_ms", 0), prefs.getLong("youtube_daily_ms", 0),
+                prefs.getLong("daily_accumulated_ms", 0), prefs.getLong("total_time_spent", 0),
+                prefs.getInt("session_count", 0), prefs.getString("last_session_date", ""));
         } catch (Exception e) {
             Log.e(TAG, "Failed to get platform stats", e);
             promise.reject("ERROR", "Failed to get platform stats: " + e.getMessage());
         }
     }
 
-    public void sendEventToReactNative(String eventName, WritableMap params) {
+    // Reads the native session log (enter/exit/overlay transitions) recorded by
+    // the service, including sessions that happened while the UI was closed
+    @ReactMethod
+    public void getSessionEvents(double sinceMs, int limit, Promise promise) {
+        try {
+            WritableArray events = Arguments.createArray();
+            int max = limit > 0 ? limit : Integer.MAX_VALUE;
+            int[] count = {0};
+            SessionEventLog.read(getReactApplicationContext().getFilesDir(), (long) sinceMs,
+                (timestampMs, type, platform, durationMs, elapsedTodayMs) -> {
+                    WritableMap event = Arguments.createMap();
+                    event.putDouble("timestamp", timestampMs);
+                    event.putString("type", SessionEventLog.typeName(type));
+                    String platformName = SessionEventLog.platformName(platform);
+                    if (platformName != null) {
+                        event.putString("platform", platformName);
+                    }
+                    event.putDouble("duration", durationMs / 1000.0);
+                    event.putDouble("totalTimeToday", elapsedTodayMs / 1000.0);
+                    events.pushMap(event);
+                    return ++count[0] < max;
+                });
+            promise.resolve(events);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to read session events", e);
+            promise.reject("ERROR", "Failed to read session events: " + e.getMessage());
+        }
+    }
+
+    // Content seconds per platform for every bucket of the requested range, at
+    // "minute" (last 24 h), "hour" (last 31 days) or "day" (last 2 years, local
+    // days) resolution. Resolves {start: bucket start ms[], instagram[], youtube[]}.
+    @ReactMethod
+    public void getUsageSeries(String resolution, double fromMs, double toMs, Promise promise) {
+        try {
+            int res;
+            if ("minute".equals(resolution)) res = UsageTimeSeries.RESOLUTION_MINUTE;
+            else if ("hour".equals(resolution)) res = UsageTimeSeries.RESOLUTION_HOUR;
+            else if ("day".equals(resolution)) res = UsageTimeSeries.RESOLUTION_DAY;
+            else {
+                promise.reject("ERROR", "Unknown resolution: " + resolution);
+                return;
+            }
+
+            UsageTimeSeries series = ContentMonitorService.getUsageSeries();
+            if (series == null) {
+                series = UsageTimeSeries.load(getReactApplicationContext().getFilesDir());
+            }
+
+            ZoneId zone = ZoneId.systemDefault();
+            WritableArray starts = Arguments.createArray();
+            WritableArray instagram = Arguments.createArray();
+            WritableArray youtube = Arguments.createArray();
+            series.query(res, toBucket(res, (long) fromMs, zone), toBucket(res, (long) toMs, zone),
+                (bucket, msByPlatform) -> {
+                    starts.pushDouble(bucketStartMs(res, bucket, zone));
+                    instagram.pushDouble(msByPlatform[SessionEventLog.PLATFORM_INSTAGRAM - 1] / 1000.0);
+                    youtube.pushDouble(msByPlatform[SessionEventLog.PLATFORM_YOUTUBE - 1] / 1000.0);
+                });
+
+            WritableMap result = Arguments.createMap();
+            result.putString("resolution", resolution);
+            result.putArray("start", starts);
+            result.putArray("instagram", instagram);
+            result.putArray("youtube", youtube);
+            promise.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to read usage series", e);
+            promise.reject("ERROR", "Failed to read usage series: " + e.getMessage());
+        }
+    }
+
+    private static long toBucket(int resolution, long timeMs, ZoneId zone) {
+        switch (resolution) {
+            case UsageTimeSeries.RESOLUTION_MINUTE: return Math.floorDiv(timeMs, UsageTimeSeries.MINUTE_MS);
+            case UsageTimeSeries.RESOLUTION_HOUR: return Math.floorDiv(timeMs, UsageTimeSeries.HOUR_MS);
+            default: return Instant.ofEpochMilli(timeMs).atZone(zone).toLocalDate().toEpochDay();
+        }
+    }
+
+    private static long bucketStartMs(int resolution, long bucket, ZoneId zone) {
+        switch (resolution) {
+            case UsageTimeSeries.RESOLUTION_MINUTE: return bucket * UsageTimeSeries.MINUTE_MS;
+            case UsageTimeSeries.RESOLUTION_HOUR: return bucket * UsageTimeSeries.HOUR_MS;
+            default: return LocalDate.ofEpochDay(bucket).atStartOfDay(zone).toInstant().toEpochMilli();
+        }
+    }
+
+    // Debug: records labelled, anonymized window trees for the detection replay
+    // corpus. Pass "instagram", "youtube" or "none" for what is about to be on
+    // screen, or null to stop.
+    @ReactMethod
+    public void setDetectionRecording(String label, Promise promise) {
+        try {
+            ContentMonitorService.setRecordingLabel(TextUtils.isEmpty(label) ? null : label);
+            promise.resolve(!TextUtils.isEmpty(label));
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to set detection recording", e);
+            promise.reject("ERROR", "Failed to set detection recording: " + e.getMessage());
+        }
+    }
+
+    // Snapshot of the service's hot-path counters and latency histograms
+    // (microseconds) since the process started
+    @ReactMethod
+    public void getDiagnostics(Promise promise) {
+        try {
+            WritableMap diagnostics = Arguments.createMap();
+            ServiceDiagnostics.get().visit(new ServiceDiagnostics.Sink() {
+                @Override
+                public void counter(String name, long value) {
+                    diagnostics.putDouble(name, value);
+                }
+
+                @Override
+                public void rate(String name, long lastSecond, long peak) {
+                    WritableMap rate = Arguments.createMap();
+                    rate.putDouble("lastSecond", lastSecond);
+                    rate.putDouble("peak", peak);
+                    diagnostics.putMap(name, rate);
+                }
+
+                @Override
+                public void histogram(String name, long[] bounds, long[] counts, long total, long sum, long max) {
+                    WritableMap histogram = Arguments.createMap();
+                    histogram.putDouble("count", total);
+                    histogram.putDouble("mean", total > 0 ? (double) sum / total : 0);
+                    histogram.putDouble("max", max);
+                    histogram.putDouble("p50", ServiceDiagnostics.percentile(bounds, counts, total, max, 0.50));
+                    histogram.putDouble("p99", ServiceDiagnostics.percentile(bounds, counts, total, max, 0.99));
+                    WritableArray bucketBounds = Arguments.createArray();
+                    WritableArray bucketCounts = Arguments.createArray();
+                    for (long bound : bounds) bucketBounds.pushDouble(bound);
+                    for (long count : counts) bucketCounts.pushDouble(count);
+                    histogram.putArray("bounds", bucketBounds);
+                    histogram.putArray("counts", bucketCounts);
+                    diagnostics.putMap(name, histogram);
+                }
+            });
+            promise.resolve(diagnostics);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to get diagnostics", e);
+            promise.reject("ERROR", "Failed to get diagnostics: " + e.getMessage());
+        }
+    }
+
+    // Appends a diagnostics snapshot to filesDir/diagnostics.jsonl every
+    // intervalSeconds; 0 turns the dump off. Survives service restarts.
+    @ReactMethod
+    public void setDiagnosticsDumpInterval(double intervalSeconds, Promise promise) {
+        try {
+            long intervalMs = Math.max(0, (long) (intervalSeconds * 1000));
+            getReactApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putLong(ContentMonitorService.DIAGNOSTICS_DUMP_INTERVAL_MS_KEY, intervalMs)
+                .apply();
+            ContentMonitorService.setDiagnosticsDumpInterval(intervalMs);
+            promise.resolve(true);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to set diagnostics dump interval", e);
+            promise.reject("ERROR", "Failed to set diagnostics dump interval: " + e.getMessage());
+        }
+    }
+
+    private static void flushBatch() {
+        synchronized (batcher) {
+            ContentMonitorModule module = instance;
+            if (module == null || !module.listenersAttached) {
+                // Stays dirty; the next drain replays it as full state
+                return;
+            }
+            WritableMap batch = buildBatch(false);
+            if (batch == null) return;
+            if (module.sendEventToReactNative("ContentBatch", batch)) {
+                ServiceDiagnostics.get().increment(ServiceDiagnostics.BATCHES_SENT);
+            } else {
+                // JS went away mid-flight; it gets full state on its next drain
+                ServiceDiagnostics.get().increment(ServiceDiagnostics.BATCHES_DROPPED);
+                module.listenersAttached = false;
+            }
+        }
+    }
+
+    // Converts the batcher's pending delta (or full state) into the JS payload.
+    // Times are in seconds like the rest of the module.
+    private static WritableMap buildBatch(boolean fullState) {
+        WritableMap[] result = {null};
+        batcher.flush(new ContentBatcher.Writer() {
+            private WritableMap map;
+            private WritableArray statuses;
+
+            @Override
+            public void beginBatch(long sequence, int fields, ContentBatcher values) {
+                map = Arguments.createMap();
+                statuses = Arguments.createArray();
+                map.putDouble("seq", sequence);
+                map.putBoolean("full", fullState);
+                if ((fields & ContentBatcher.FIELD_PLATFORM) != 0 && values.getPlatform() != null) {
+                    map.putString("platform", values.getPlatform());
+                }
+                if ((fields & ContentBatcher.FIELD_TOTAL_TIME) != 0) {
+                    map.putDouble("totalTimeSpent", values.getTotalTimeMs() / 1000.0);
+                }
+                if ((fields & ContentBatcher.FIELD_SESSION_TIME) != 0) {
+                    map.putDouble("currentSessionTime", values.getSessionTimeMs() / 1000.0);
+                }
+                if ((fields & ContentBatcher.FIELD_INSTAGRAM_TODAY) != 0) {
+                    map.putDouble("instagramTimeToday", values.getInstagramTodayMs() / 1000.0);
+                }
+                if ((fields & ContentBatcher.FIELD_YOUTUBE_TODAY) != 0) {
+                    map.putDouble("youtubeTimeToday", values.getYoutubeTodayMs() / 1000.0);
+                }
+                if ((fields & ContentBatcher.FIELD_SESSION_COUNT) != 0) {
+                    map.putInt("sessionCount", values.getSessionCount());
+                }
+                if ((fields & ContentBatcher.FIELD_LAST_SESSION_DATE) != 0 && values.getLastSessionDate() != null) {
+                    map.putString("lastSessionDate", values.getLastSessionDate());
+                }
+            }
+
+            @Override
+            public void status(String status) {
+                statuses.pushString(status);
+            }
+
+            @Override
+            public void endBatch(int droppedStatuses) {
+                map.putArray("statuses", statuses);
+                map.putInt("droppedStatuses", droppedStatuses);
+                ServiceDiagnostics.get().add(ServiceDiagnostics.STATUSES_DROPPED, droppedStatuses);
+                result[0] = map;
+            }
+        }, fullState);
+        return result[0];
+    }
+
+    // Called by JS once its ContentBatch listener is registered. Resolves with
+    // the full current state plus any statuses recorded while nobody was
+    // listening, and switches to per-frame delivery.
+    @ReactMethod
+    public void drainPendingEvents(Promise promise) {
+        try {
+            WritableMap batch;
+            synchronized (batcher) {
+                batch = buildBatch(true);
+                listenersAttached = true;
+            }
+            promise.resolve(batch);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to drain pending events", e);
+            promise.reject("ERROR", "Failed to drain pending events: " + e.getMessage());
+        }
+    }
+
+    public boolean sendEventToReactNative(String eventName, WritableMap params) {
         try {
             ReactApplicationContext context = getReactApplicationContext();
             if (context != null && context.hasActiveCatalystInstance()) {
                 context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
                     .emit(eventName, params);
                 Log.d(TAG, "Event sent to React Native: " + eventName);
+                return true;
             } else {
-                Log.w(TAG, "ReactContext is null or not active, cannot send event: " + eventName);
+                Log.w(TAG, "ReactContext is null or not active, buffering event: " + eventName);
             }
         } catch (Exception e) {
             Log.e(TAG, "Failed to send event to React Native: " + eventName, e);
         }
+        return false;
     }
 
     @ReactMethod
@@ -194,11 +537,34 @@ public class ContentMonitorModule extends ReactContextBaseJavaModule {
     @ReactMethod
     public void addListener(String eventName) {
         // Required for NativeEventEmitter
+        synchronized (batcher) {
+            listenerCount++;
+        }
     }
 
     @ReactMethod
     public void removeListeners(int count) {
         // Required for NativeEventEmitter
+        synchronized (batcher) {
+            listenerCount = Math.max(0, listenerCount - count);
+            if (listenerCount == 0) {
+                // Nobody is listening anymore: buffer until the next drain
+                listenersAttached = false;
+            }
+        }
+    }
+
+    @Override
+    public void invalidate() {
+        synchronized (batcher) {
+            listenersAttached = false;
+            listenerCount = 0;
+            if (instance == this) {
+                instance = null;
+                ContentEventQueue.get().setDeliverer(null);
+            }
+        }
+        super.invalidate();
     }
 
     private boolean isAccessibilityServiceEnabled() {
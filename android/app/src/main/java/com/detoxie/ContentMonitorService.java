@@ -1,350 +1,602 @@
 package com.detoxie;
 
 import android.accessibilityservice.AccessibilityService;
+import android.app.ActivityManager;
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.SharedPreferences;
-import android.graphics.Color;
-import android.graphics.drawable.GradientDrawable;
+import android.database.SQLException;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.util.Log;
-import android.util.TypedValue;
 import android.util.DisplayMetrics;
 import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
-import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.view.WindowManager;
 import android.view.accessibility.AccessibilityEvent;
 import android.view.accessibility.AccessibilityNodeInfo;
-import android.widget.Button;
-import android.widget.ImageView;
-import android.widget.LinearLayout;
-import android.widget.ScrollView;
-import android.widget.TextView;
 
-import com.facebook.react.bridge.WritableMap;
-import com.facebook.react.bridge.ReadableMap;
-import com.facebook.react.bridge.Arguments;
+import org.json.JSONException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 
 public class ContentMonitorService extends AccessibilityService {
     private static final String TAG = "ContentMonitorService";
 
-    // Platform package names
-    private static final String INSTAGRAM_PACKAGE = "com.instagram.android";
-    private static final String YOUTUBE_PACKAGE = "com.google.android.youtube";
-
     // Platform identifiers
-    public static final String PLATFORM_INSTAGRAM = "instagram";
-    public static final String PLATFORM_YOUTUBE = "youtube";
+    public static final String PLATFORM_INSTAGRAM = Platforms.INSTAGRAM;
+    public static final String PLATFORM_YOUTUBE = Platforms.YOUTUBE;
 
     private static final String PREFS_NAME = "ContentMonitorPrefs";
-    private static final String TOTAL_TIME_KEY = "total_time_spent";
-    private static final String SESSION_COUNT_KEY = "session_count";
-    private static final String LAST_SESSION_DATE_KEY = "last_session_date";
-
-    // Daily gating keys (shared across platforms)
-    private static final String DAILY_DATE_KEY = "daily_date";
-    private static final String DAILY_ACCUMULATED_MS_KEY = "daily_accumulated_ms";
-    private static final String DAILY_HALF_SHOWN_KEY = "daily_half_shown";
-    private static final String DAILY_LIMIT_REACHED_KEY = "daily_limit_reached";
-
-    // Per-platform daily tracking keys
-    private static final String INSTAGRAM_DAILY_MS_KEY = "instagram_daily_ms";
-    private static final String YOUTUBE_DAILY_MS_KEY = "youtube_daily_ms";
-
+    // Written by the module; read here at connect so it holds before the app ever runs
+    static final String VACATION_MODE_KEY = "vacation_mode";
+
+    // Counters are written back at most this often while content is active
+    private static final long COUNTER_FLUSH_INTERVAL_MS = 30_000;
+
+    // Session log sizing: 4096 x 32-byte records per segment, newest 8 segments kept
+    private static final int SESSION_LOG_RECORDS_PER_SEGMENT = 4096;
+    private static final int SESSION_LOG_MAX_SEGMENTS = 8;
+
+    // Event coalescing window, overridable through prefs for tuning
+    private static final String COALESCE_WINDOW_MS_KEY = "coalesce_window_ms";
+    private static final long DEFAULT_COALESCE_WINDOW_MS = 250;
+
+    // Rate of ContentTimeUpdate ticks while in content, overridable through prefs
+    private static final String TIME_UPDATE_INTERVAL_MS_KEY = "time_update_interval_ms";
+    // Periodic diagnostics dump (filesDir/diagnostics.jsonl), off unless set from JS
+    static final String DIAGNOSTICS_DUMP_INTERVAL_MS_KEY = "diagnostics_dump_interval_ms";
+    static final String DIAGNOSTICS_FILE_NAME = "diagnostics.jsonl";
+    private static final long DIAGNOSTICS_MAX_FILE_BYTES = 256 * 1024;
+    private static final long DEFAULT_TIME_UPDATE_INTERVAL_MS = 1000;
+
+    // Overlay rendering: "auto" (default), "lite" or "full"; the measured choice is kept separately
+    private static final String OVERLAY_MODE_KEY = "overlay_mode";
+    private static final String OVERLAY_MODE_AUTO = "auto";
+    private static final String OVERLAY_MODE_LITE = "lite";
+    private static final String OVERLAY_LITE_MEASURED_KEY = "overlay_lite_measured";
+
+    // How long a transient window (system UI, keyboard) may cover content before the session ends
+    private static final String TRANSIENT_GRACE_MS_KEY = "transient_grace_ms";
+    private static final long DEFAULT_TRANSIENT_GRACE_MS = 2000;
+
+    // Snapshot budget: capture stops after this many levels / nodes. Anchors are
+    // looked up in the snapshot, so this covers the tab bar and player chrome.
+    private static final int SNAPSHOT_MAX_DEPTH = 32;
+    private static final int SNAPSHOT_MAX_NODES = 400;
+
+    private static volatile ContentMonitorService instance;
+
+    // Session state below is owned by the worker thread; only overlay views
+    // are touched on the UI thread.
+    // SystemClock.elapsedRealtime(), so wall clock changes can't stretch or shrink a session
     private long contentStartTime = 0;
-    private boolean isInContent = false;
-    private String currentPlatform = null; // "instagram" or "youtube"
-    private boolean isOverlayShowing = false;
-    private String lastKnownPackage = "";
+    private long lastCheckpointTime = 0; // session time before this is already in the counters
+    // Whether we are in content, on which platform, and whether the overlay is up
+    private final SessionStateMachine session =
+        new SessionStateMachine(new SessionEffects(), DEFAULT_TRANSIENT_GRACE_MS);
+    private final Runnable graceExpiredTask = () -> session.onGraceExpired(SystemClock.elapsedRealtime());
+    private String inputMethodPackage; // default keyboard, treated as transient
     private WindowManager windowManager;
     private View overlayView;
+    private OverlayViewCache overlayCache; // UI thread only
+    private boolean overlayAutoMode = true; // UI thread only
+    private final OverlayCountdown overlayCountdown = new OverlayCountdown(); // UI thread only
     private SharedPreferences prefs;
+    // Status/time/stats reports for the UI; never touches React Native
+    private final ContentEventSink events = ContentEventQueue.get();
+    private boolean vacationMode = false;
+    private final DailyCounterStore counters = new DailyCounterStore();
+    private final DayClock dayClock = new DayClock();
+    private final BroadcastReceiver clockReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            onClockChanged(intent.getAction()); // delivered on the worker
+        }
+    };
+    private boolean clockReceiverRegistered = false;
+    private final Runnable flushCountersTask = this::flushCounters;
+    private boolean flushScheduled = false;
+    private final Runnable timeUpdateTick = this::onTimeUpdateTick;
+    private long timeUpdateIntervalMs = DEFAULT_TIME_UPDATE_INTERVAL_MS;
+    private boolean tickerRunning = false;
+    private ThresholdScheduler thresholdScheduler;
+    private SessionEventLog sessionLog;
+    private volatile UsageTimeSeries usageSeries; // published once loaded
+    private UsageDatabase usageDb; // usage_sessions / platform_daily_stats writer
+    private HandlerThread workerThread;
+    // Read from the event and UI threads; cleared by the worker's last task
+    private volatile Handler workerHandler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private EventCoalescer eventCoalescer;
+    // Monitored apps, built from detection_rules.json; empty until the rules load
+    private volatile DetectorRegistry detectors = new DetectorRegistry(); // read-only once published
+    private final ScreenStateCache screenCache = new ScreenStateCache();
+    private int eventWindowId = -1;
+    // The active window, captured at most once per coalesced event
+    private TreeSnapshot snapshot;
+    private final TreeCapture treeCapture = new TreeCapture();
+    private KeywordMatcher ruleKeywords;
+    private TreeRecorder treeRecorder; // non-null while recorder mode is on
+    private boolean handlingEvent = false;
+    private boolean snapshotCaptured = false;
+    private final ServiceDiagnostics diagnostics = ServiceDiagnostics.get();
+    private final Runnable diagnosticsDumpTask = this::dumpDiagnostics;
+    private long diagnosticsDumpIntervalMs = 0; // 0 = no periodic dump
 
     @Override
     protected void onServiceConnected() {
         super.onServiceConnected();
         Log.d(TAG, "Service connected");
-        prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        ensureDailyState();
 
-        sendEventToReactNative("ContentEvent", createEventMap("Service Connected", null, 0));
+        // Single writer: classification, accounting and persistence all run here
+        workerThread = new HandlerThread("ContentMonitorWorker", Process.THREAD_PRIORITY_BACKGROUND);
+        workerThread.start();
+        workerHandler = new Handler(workerThread.getLooper());
+        thresholdScheduler = new ThresholdScheduler(workerHandler, threshold -> onThresholdCrossed());
+        instance = this;
+
+        // The day boundary is cached; a new zone or a manually set clock invalidates it
+        IntentFilter clockFilter = new IntentFilter();
+        clockFilter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        clockFilter.addAction(Intent.ACTION_TIME_CHANGED);
+        registerReceiver(clockReceiver, clockFilter, null, workerHandler);
+        clockReceiverRegistered = true;
+
+        workerHandler.post(() -> {
+            prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+            DailyCounterPrefs.load(counters, prefs);
+            vacationMode = prefs.getBoolean(VACATION_MODE_KEY, false);
+            sessionLog = new SessionEventLog(getFilesDir(),
+                SESSION_LOG_RECORDS_PER_SEGMENT, SESSION_LOG_MAX_SEGMENTS);
+            try {
+                usageSeries = UsageTimeSeries.load(getFilesDir());
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to load usage series, starting empty", e);
+                usageSeries = new UsageTimeSeries();
+            }
+            usageDb = new UsageDatabase(this);
+            try {
+                // Persisted by configureOverlay; lets us enforce the real limit before RN starts
+                OverlayConfig.load(getFilesDir());
+            } catch (java.io.IOException e) {
+                Log.e(TAG, "Failed to load overlay config, using defaults", e);
+            }
+            loadDetectionRules();
+            ensureDailyState();
+
+            session.setGraceWindowMs(prefs.getLong(TRANSIENT_GRACE_MS_KEY, DEFAULT_TRANSIENT_GRACE_MS));
+            inputMethodPackage = readInputMethodPackage();
+            timeUpdateIntervalMs = Math.max(100,
+                prefs.getLong(TIME_UPDATE_INTERVAL_MS_KEY, DEFAULT_TIME_UPDATE_INTERVAL_MS));
+            long windowMs = prefs.getLong(COALESCE_WINDOW_MS_KEY, DEFAULT_COALESCE_WINDOW_MS);
+            eventCoalescer = new EventCoalescer(workerHandler, windowMs, this::processWindowState);
+            setDiagnosticsDumpIntervalOnWorker(prefs.getLong(DIAGNOSTICS_DUMP_INTERVAL_MS_KEY, 0));
+
+            events.onStatus("Service Connected", null, getTotalTimeSpent());
+        });
     }
 
     @Override
     public void onAccessibilityEvent(AccessibilityEvent event) {
-        if (event.getPackageName() == null) return;
+        long startNs = System.nanoTime();
+        diagnostics.onEvent(SystemClock.elapsedRealtime());
+        dispatchEvent(event);
+        diagnostics.recordNanos(ServiceDiagnostics.EVENT_DISPATCH_NS, System.nanoTime() - startNs);
+    }
 
-        String packageName = event.getPackageName().toString();
+    private void dispatchEvent(AccessibilityEvent event) {
+        if (event.getPackageName() == null || workerHandler == null) return;
 
-        // If overlay is showing, keep it visible only while user remains in tracked sections
-        if (isOverlayShowing) {
-            if (YOUTUBE_PACKAGE.equals(packageName)) {
-                AccessibilityNodeInfo rootNode = getRootInActiveWindow();
-                boolean shortsSectionActive = rootNode != null && isYouTubeShortsActive(rootNode);
-
-                if (!shortsSectionActive) {
-                    String previousPlatform = currentPlatform;
-                    Log.d(TAG, "User left YouTube Shorts while overlay was showing");
-                    onExitContentIfNeeded();
-                    String status = PLATFORM_YOUTUBE.equals(previousPlatform) ? "Left Shorts" : "Left App";
-                    sendEventToReactNative("ContentEvent", createEventMap(status, previousPlatform, getTotalTimeSpent()));
-                }
-                return;
+        // The event is recycled once we return, so copy what the worker needs
+        String packageName = event.getPackageName().toString();
+        int eventType = event.getEventType();
+        int windowId = event.getWindowId();
+        String className = null;
+        boolean structural = false;
+        AccessibilityEvent copy = null;
+        if (eventType == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED) {
+            CharSequence eventClass = event.getClassName();
+            className = eventClass != null ? eventClass.toString() : null;
+        } else if (eventType == AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED) {
+            int changes = event.getContentChangeTypes();
+            structural = changes == AccessibilityEvent.CONTENT_CHANGE_TYPE_UNDEFINED
+                || (changes & AccessibilityEvent.CONTENT_CHANGE_TYPE_SUBTREE) != 0;
+            // Only monitored apps have cached results worth keeping. getSource()
+            // is a binder call, so the worker resolves it from a copy.
+            if (structural && detectors.forPackage(packageName) != null) {
+                copy = AccessibilityEvent.obtain(event);
             }
+        }
 
-            if (INSTAGRAM_PACKAGE.equals(packageName)) {
-                AccessibilityNodeInfo rootNode = getRootInActiveWindow();
-                boolean reelsSectionActive = rootNode != null && isReelsSectionActive(rootNode);
-
-                if (!reelsSectionActive) {
-                    String previousPlatform = currentPlatform;
-                    Log.d(TAG, "User left Instagram Reels while overlay was showing");
-                    onExitContentIfNeeded();
-                    String status = PLATFORM_INSTAGRAM.equals(previousPlatform) ? "Left Reels" : "Left App";
-                    sendEventToReactNative("ContentEvent", createEventMap(status, previousPlatform, getTotalTimeSpent()));
-                }
-                return;
+        String stateClassName = className;
+        boolean structuralChange = structural;
+        AccessibilityEvent sourceEvent = copy;
+        workerHandler.post(() -> {
+            if (eventType == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED) {
+                screenCache.onWindowStateChanged(windowId, stateClassName);
+            } else if (structuralChange) {
+                screenCache.onStructuralChange(windowId, sourceViewId(sourceEvent));
+            }
+            // Bursts of scroll/content events are folded into one classification per window
+            if (eventCoalescer != null) {
+                eventCoalescer.submit(packageName, windowId);
             }
+        });
+    }
 
-            if (!INSTAGRAM_PACKAGE.equals(packageName) &&
-                !YOUTUBE_PACKAGE.equals(packageName) &&
-                !packageName.equals(getPackageName()) &&
-                !packageName.equals("android") &&
-                !packageName.equals("com.android.systemui")) {
+    // View id of the changed node, if it has one; recycles the event copy
+    private static String sourceViewId(AccessibilityEvent event) {
+        if (event == null) return null;
+        AccessibilityNodeInfo source = event.getSource();
+        event.recycle();
+        if (source == null) return null;
+        String viewId = source.getViewIdResourceName();
+        source.recycle();
+        return viewId;
+    }
 
-                Log.d(TAG, "User genuinely switched to another app: " + packageName);
-                removeOverlay();
-                sendEventToReactNative("ContentEvent", createEventMap("Left App", currentPlatform, getTotalTimeSpent()));
+    private void processWindowState(String packageName, int windowId) {
+        long startNs = System.nanoTime();
+        diagnostics.increment(ServiceDiagnostics.EVENTS_HANDLED);
+        // Every check made while handling this event shares one snapshot
+        handlingEvent = true;
+        eventWindowId = windowId;
+        try {
+            handleWindowState(packageName);
+        } finally {
+            handlingEvent = false;
+            snapshotCaptured = false;
+            if (snapshot != null) {
+                snapshot.clear();
             }
-            return;
-        }
-
-        if (!isOverlayShowing) {
-            lastKnownPackage = packageName;
+            diagnostics.recordNanos(ServiceDiagnostics.EVENT_HANDLING_NS, System.nanoTime() - startNs);
         }
+    }
 
-        // Check if user is in Instagram
-        if (INSTAGRAM_PACKAGE.equals(packageName)) {
-            handleInstagramEvent(event);
-            return;
+    private void handleWindowState(String packageName) {
+        PlatformDetector detector = detectors.forPackage(packageName);
+        if (treeRecorder != null && detector != null) {
+            treeRecorder.record(getRootInActiveWindow(), packageName);
         }
 
-        // Check if user is in YouTube
-        if (YOUTUBE_PACKAGE.equals(packageName)) {
-            handleYouTubeEvent(event);
-            return;
+        long now = SystemClock.elapsedRealtime();
+        if (detector != null) {
+            if (isSectionActive(detector)) {
+                ensureDailyState();
+                session.onContent(detector.getPlatform(), now);
+            } else {
+                session.onSectionLeft(detector.getPlatform(), now);
+            }
+        } else if (isTransientPackage(packageName)) {
+            session.onTransientApp(now);
+        } else {
+            session.onOtherApp(now);
         }
+    }
 
-        // User switched to another app
-        Log.d(TAG, "User has exited content app to: " + packageName);
-        onExitContentIfNeeded();
-        sendEventToReactNative("ContentEvent", createEventMap("Left App", currentPlatform, getTotalTimeSpent()));
+    // Windows that briefly cover content without the user leaving it
+    private boolean isTransientPackage(String packageName) {
+        return packageName.equals(getPackageName())
+            || packageName.equals("android")
+            || packageName.equals("com.android.systemui")
+            || packageName.equals(inputMethodPackage);
     }
 
-    private void handleInstagramEvent(AccessibilityEvent event) {
-        AccessibilityNodeInfo rootNode = getRootInActiveWindow();
-        boolean reelsSectionActive = rootNode != null && isReelsSectionActive(rootNode);
+    private String readInputMethodPackage() {
+        String id = Settings.Secure.getString(getContentResolver(), Settings.Secure.DEFAULT_INPUT_METHOD);
+        ComponentName component = id != null ? ComponentName.unflattenFromString(id) : null;
+        return component != null ? component.getPackageName() : null;
+    }
 
-        if (reelsSectionActive) {
-            handleContentActive(PLATFORM_INSTAGRAM);
-        } else {
-            if (isInContent && PLATFORM_INSTAGRAM.equals(currentPlatform)) {
-                onExitContentIfNeeded();
-                sendEventToReactNative("ContentEvent", createEventMap("Left Reels", PLATFORM_INSTAGRAM, getTotalTimeSpent()));
-            }
-        }
+    private String sectionName(String platform) {
+        PlatformDetector detector = detectors.forPlatform(platform);
+        return detector != null ? detector.getSectionName() : platform;
     }
 
-    private void handleYouTubeEvent(AccessibilityEvent event) {
-        AccessibilityNodeInfo rootNode = getRootInActiveWindow();
-        boolean shortsSectionActive = rootNode != null && isYouTubeShortsActive(rootNode);
+    // Side effects of session transitions; each runs only when the table asks for it
+    private final class SessionEffects implements SessionStateMachine.Effects {
+        @Override
+        public void enterSession(String platform, long now) {
+            contentStartTime = now;
+            lastCheckpointTime = now;
+            scheduleCounterFlush();
+            String eventName = "Entered " + sectionName(platform);
+            Log.d(TAG, eventName + " on " + platform);
+            events.onStatus(eventName, platform, getTotalTimeSpent());
+            logTransition(SessionEventLog.TYPE_ENTER, platform, 0);
+            startTimeUpdates();
+            armThresholds(now);
+            // The keyboard may have changed since the last session
+            inputMethodPackage = readInputMethodPackage();
+        }
+
+        @Override
+        public void exitSession(String platform, long endTime, SessionStateMachine.Input cause) {
+            // Time already flushed during a grace window stays counted
+            endTime = Math.max(endTime, lastCheckpointTime);
+            creditSession(platform, endTime);
+            long sessionMs = endTime - contentStartTime;
+            logTransition(SessionEventLog.TYPE_EXIT, platform, sessionMs);
+            updateTotalTimeSpent(platform);
+            if (usageDb != null) {
+                long wallEnd = System.currentTimeMillis() - (SystemClock.elapsedRealtime() - endTime);
+                usageDb.recordSession(platform, dayClock.getToday(), wallEnd - sessionMs, wallEnd, sessionMs);
+            }
+            stopTimeUpdates();
+            thresholdScheduler.cancel();
+            contentStartTime = 0;
+            lastCheckpointTime = 0;
 
-        if (shortsSectionActive) {
-            handleContentActive(PLATFORM_YOUTUBE);
-        } else {
-            if (isInContent && PLATFORM_YOUTUBE.equals(currentPlatform)) {
-                onExitContentIfNeeded();
-                sendEventToReactNative("ContentEvent", createEventMap("Left Shorts", PLATFORM_YOUTUBE, getTotalTimeSpent()));
+            if (session.isInContent()) {
+                // Platform switch: flush once the new session has started
+                postToWorker(flushCountersTask);
+                return;
             }
+            flushCounters();
+            String status = cause == SessionStateMachine.Input.SECTION_LEFT
+                ? "Left " + sectionName(platform) : "Left App";
+            Log.d(TAG, status + " (" + cause + ") from " + platform);
+            events.onStatus(status, platform, getTotalTimeSpent());
         }
-    }
 
-    private void handleContentActive(String platform) {
-        ensureDailyState();
-        long now = System.currentTimeMillis();
-
-        // If switching platforms mid-session, close previous session first
-        if (isInContent && currentPlatform != null && !currentPlatform.equals(platform)) {
-            onExitContentIfNeeded();
+        @Override
+        public void resumeSession(String platform, long now) {
+            armThresholds(now);
+            logTransition(SessionEventLog.TYPE_OVERLAY_DISMISSED, platform, 0);
+            Log.d(TAG, "Overlay dismissed, continue tracking");
+            events.onStatus("Overlay Dismissed", platform, getTotalTimeSpent());
         }
 
-        if (!isInContent) {
-            isInContent = true;
-            currentPlatform = platform;
-            contentStartTime = now;
-            String eventName = PLATFORM_INSTAGRAM.equals(platform) ? "Entered Reels" : "Entered Shorts";
-            Log.d(TAG, eventName + " on " + platform);
-            sendEventToReactNative("ContentEvent", createEventMap(eventName, platform, getTotalTimeSpent()));
+        @Override
+        public void enforceLimits(long now) {
+            ContentMonitorService.this.enforceLimits(now);
         }
 
-        // Send periodic updates while in content
-        long currentSessionTime = now - contentStartTime;
-        sendEventToReactNative("ContentTimeUpdate", createTimeUpdateMap(currentSessionTime, platform));
-
-        // Calculate total elapsed today (combined across platforms)
-        long accumulatedToday = prefs.getLong(DAILY_ACCUMULATED_MS_KEY, 0);
-        long totalElapsedToday = accumulatedToday + currentSessionTime;
+        @Override
+        public void removeOverlay() {
+            mainHandler.post(ContentMonitorService.this::detachOverlay);
+        }
 
-        long fullThresholdMs = getConfiguredLimitMs();
-        long halfThresholdMs = fullThresholdMs / 2;
+        @Override
+        public void armGrace(long delayMs) {
+            workerHandler.postDelayed(graceExpiredTask, delayMs);
+        }
 
-        boolean halfShown = prefs.getBoolean(DAILY_HALF_SHOWN_KEY, false);
-        boolean limitReached = prefs.getBoolean(DAILY_LIMIT_REACHED_KEY, false);
+        @Override
+        public void cancelGrace() {
+            workerHandler.removeCallbacks(graceExpiredTask);
+        }
+    }
 
+    // Called with the worker's current state by the deadline alarms, on entry and
+    // when a classification confirms content; shows whichever overlay is due.
+    private void enforceLimits(long now) {
         // Check if vacation mode is enabled - if so, don't show any overlays
-        ContentMonitorModule module = ContentMonitorModule.getInstance();
-        if (module != null && module.isVacationMode()) {
+        if (vacationMode) {
             Log.d(TAG, "Vacation mode is enabled, skipping overlay display");
             return;
         }
 
-        if (limitReached) {
-            showOverlay(totalElapsedToday, /*allowClose*/ false);
-            return;
+        // Total elapsed today (combined across platforms)
+        long totalElapsedToday = getElapsedTodayMs(now);
+        switch (LimitPolicy.decide(totalElapsedToday, getConfiguredLimitMs(),
+                counters.isHalfShown(), counters.isLimitReached())) {
+            case LimitPolicy.ACTION_SHOW_LIMIT:
+                showOverlay(totalElapsedToday, /*allowClose*/ false);
+                break;
+            case LimitPolicy.ACTION_SHOW_HALF:
+                showOverlay(totalElapsedToday, /*allowClose*/ true);
+                counters.markHalfShown();
+                scheduleCounterFlush();
+                break;
+            case LimitPolicy.ACTION_REACH_LIMIT:
+                counters.markLimitReached();
+                scheduleCounterFlush();
+                showOverlay(totalElapsedToday, /*allowClose*/ false);
+                break;
         }
+    }
 
-        if (!halfShown && totalElapsedToday >= halfThresholdMs) {
-            showOverlay(totalElapsedToday, /*allowClose*/ true);
-            prefs.edit().putBoolean(DAILY_HALF_SHOWN_KEY, true).apply();
-            return;
-        }
+    private long getElapsedTodayMs(long now) {
+        return counters.getDailyAccumulatedMs() + (session.isInContent() ? now - lastCheckpointTime : 0);
+    }
 
-        if (totalElapsedToday >= fullThresholdMs) {
-            prefs.edit().putBoolean(DAILY_LIMIT_REACHED_KEY, true).apply();
-            showOverlay(totalElapsedToday, /*allowClose*/ false);
+    // Computes when each threshold will be crossed and arms an alarm for it
+    private void armThresholds(long now) {
+        if (thresholdScheduler == null) return;
+        if (!session.isInContent() || vacationMode) {
+            thresholdScheduler.cancel();
             return;
         }
+        thresholdScheduler.arm(getElapsedTodayMs(now), getConfiguredLimitMs(),
+            counters.isHalfShown(), counters.isLimitReached());
     }
 
-    private WritableMap createEventMap(String status, String platform, long totalTime) {
-        WritableMap map = Arguments.createMap();
-        map.putString("status", status);
-        map.putDouble("totalTimeSpent", totalTime / 1000.0); // Convert to seconds
-        if (platform != null) {
-            map.putString("platform", platform);
-        }
-        return map;
+    private void onThresholdCrossed() {
+        if (!session.isInContent()) return;
+        ensureDailyState();
+        enforceLimits(SystemClock.elapsedRealtime());
     }
 
-    private WritableMap createTimeUpdateMap(long currentSessionTime, String platform) {
-        WritableMap map = Arguments.createMap();
-        map.putDouble("currentSessionTime", currentSessionTime / 1000.0);
-        map.putDouble("totalTimeSpent", getTotalTimeSpent() / 1000.0);
-        if (platform != null) {
-            map.putString("platform", platform);
+    // Limit changed from JS: recompute the deadlines
+    static void onLimitSettingsChanged() {
+        ContentMonitorService service = instance;
+        if (service != null) {
+            service.postToWorker(service::onLimitSettingsChangedOnWorker);
         }
-        // Include per-platform stats
-        map.putDouble("instagramTimeToday", prefs.getLong(INSTAGRAM_DAILY_MS_KEY, 0) / 1000.0);
-        map.putDouble("youtubeTimeToday", prefs.getLong(YOUTUBE_DAILY_MS_KEY, 0) / 1000.0);
-        return map;
     }
 
-    private void updateTotalTimeSpent(long sessionTime, String platform) {
-        long totalTime = prefs.getLong(TOTAL_TIME_KEY, 0) + sessionTime;
-        int sessionCount = prefs.getInt(SESSION_COUNT_KEY, 0) + 1;
-        String currentDate = java.text.DateFormat.getDateInstance().format(new java.util.Date());
-
-        SharedPreferences.Editor editor = prefs.edit()
-            .putLong(TOTAL_TIME_KEY, totalTime)
-            .putInt(SESSION_COUNT_KEY, sessionCount)
-            .putString(LAST_SESSION_DATE_KEY, currentDate);
+    // Called by the module after persisting the flag
+    static void setVacationMode(boolean enabled) {
+        ContentMonitorService service = instance;
+        if (service != null) {
+            service.postToWorker(() -> {
+                service.vacationMode = enabled;
+                service.onLimitSettingsChangedOnWorker();
+            });
+        }
+    }
 
-        // Update per-platform daily stats
-        if (PLATFORM_INSTAGRAM.equals(platform)) {
-            long instagramToday = prefs.getLong(INSTAGRAM_DAILY_MS_KEY, 0) + sessionTime;
-            editor.putLong(INSTAGRAM_DAILY_MS_KEY, instagramToday);
-        } else if (PLATFORM_YOUTUBE.equals(platform)) {
-            long youtubeToday = prefs.getLong(YOUTUBE_DAILY_MS_KEY, 0) + sessionTime;
-            editor.putLong(YOUTUBE_DAILY_MS_KEY, youtubeToday);
+    private void onLimitSettingsChangedOnWorker() {
+        long now = SystemClock.elapsedRealtime();
+        armThresholds(now);
+        if (session.isInContent()) {
+            enforceLimits(now);
         }
+    }
 
-        editor.apply();
+    private void updateTotalTimeSpent(String platform) {
+        ensureDailyState();
+        String currentDate = dayClock.getDisplayDate();
+        counters.recordSessionEnd(currentDate);
+        long totalTime = counters.getTotalTimeMs();
+        int sessionCount = counters.getSessionCount();
 
         Log.d(TAG, "Updated total time: " + (totalTime / 1000) + " seconds, Session count: " + sessionCount + ", Platform: " + platform);
 
         // Send updated stats to React Native
-        WritableMap statsMap = Arguments.createMap();
-        statsMap.putDouble("totalTime", totalTime / 1000.0);
-        statsMap.putInt("sessionCount", sessionCount);
-        statsMap.putString("lastSessionDate", currentDate);
-        if (platform != null) {
-            statsMap.putString("platform", platform);
-        }
-        statsMap.putDouble("instagramTimeToday", prefs.getLong(INSTAGRAM_DAILY_MS_KEY, 0) / 1000.0);
-        statsMap.putDouble("youtubeTimeToday", prefs.getLong(YOUTUBE_DAILY_MS_KEY, 0) / 1000.0);
-        sendEventToReactNative("ContentStatsUpdate", statsMap);
+        events.onStats(totalTime, sessionCount, currentDate, platform,
+            counters.getInstagramDailyMs(), counters.getYoutubeDailyMs());
     }
 
     private long getTotalTimeSpent() {
-        return prefs.getLong(TOTAL_TIME_KEY, 0);
+        return counters.getTotalTimeMs();
     }
 
-    private void sendEventToReactNative(String eventName, WritableMap params) {
+    // Records are stamped with wall time; durations come from the monotonic clock
+    private void logTransition(byte type, String platform, long durationMs) {
+        if (sessionLog == null) return;
         try {
-            ContentMonitorModule module = ContentMonitorModule.getInstance();
-            if (module != null) {
-                module.sendEventToReactNative(eventName, params);
-            } else {
-                Log.w(TAG, "ContentMonitorModule instance is null");
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to send event to React Native: " + eventName, e);
+            sessionLog.append(System.currentTimeMillis(), type, SessionEventLog.platformCode(platform), durationMs,
+                getElapsedTodayMs(SystemClock.elapsedRealtime()));
+        } catch (java.io.IOException e) {
+            Log.e(TAG, "Failed to append to session log", e);
         }
     }
 
-    private void onExitContentIfNeeded() {
-        if (isInContent) {
-            long sessionTime = System.currentTimeMillis() - contentStartTime;
-            updateTotalTimeSpent(sessionTime, currentPlatform);
-            // Accumulate into today's counter (shared across platforms)
-            long accumulatedToday = prefs.getLong(DAILY_ACCUMULATED_MS_KEY, 0);
-            prefs.edit().putLong(DAILY_ACCUMULATED_MS_KEY, accumulatedToday + sessionTime).apply();
-            isInContent = false;
-            contentStartTime = 0;
-            currentPlatform = null;
+    // Time updates are clock driven, not event driven, so the JS timer keeps
+    // moving while the user just watches. Nothing is scheduled outside content.
+    private void startTimeUpdates() {
+        if (tickerRunning || workerHandler == null) return;
+        tickerRunning = true;
+        onTimeUpdateTick();
+    }
+
+    private void stopTimeUpdates() {
+        if (!tickerRunning) return;
+        tickerRunning = false;
+        workerHandler.removeCallbacks(timeUpdateTick);
+    }
+
+    private void onTimeUpdateTick() {
+        if (!tickerRunning || !session.isInContent()) {
+            tickerRunning = false;
+            return;
         }
-        removeOverlay();
+        long currentSessionTime = SystemClock.elapsedRealtime() - contentStartTime;
+        events.onTimeUpdate(currentSessionTime, getTotalTimeSpent(), session.getPlatform(),
+            counters.getInstagramDailyMs(), counters.getYoutubeDailyMs());
+        workerHandler.postAtTime(timeUpdateTick, SystemClock.uptimeMillis() + timeUpdateIntervalMs);
     }
 
+    // Moves the session time elapsed since the last checkpoint into the counters
+    private void checkpointSession(long now) {
+        if (!session.isInContent()) return;
+        creditSession(session.getPlatform(), now);
+    }
+
+    private void creditSession(String platform, long now) {
+        long ms = now - lastCheckpointTime;
+        counters.addContentTime(platform, ms);
+        if (usageSeries != null) {
+            long wallNow = System.currentTimeMillis() - (SystemClock.elapsedRealtime() - now);
+            usageSeries.add(SessionEventLog.platformCode(platform), wallNow, ms, dayClock.epochDayAt(wallNow));
+        }
+        lastCheckpointTime = now;
+    }
+
+    private void scheduleCounterFlush() {
+        if (flushScheduled || workerHandler == null) return;
+        flushScheduled = true;
+        workerHandler.postDelayed(flushCountersTask, COUNTER_FLUSH_INTERVAL_MS);
+    }
+
+    // Worker thread only. Also re-arms itself while a session is running so an
+    // open session never has more than one interval of unsaved time.
+    private void flushCounters() {
+        if (prefs == null) return;
+        if (flushScheduled) {
+            workerHandler.removeCallbacks(flushCountersTask);
+            flushScheduled = false;
+        }
+        checkpointSession(SystemClock.elapsedRealtime());
+        if (!DailyCounterPrefs.flush(counters, prefs)) {
+            Log.w(TAG, "Failed to persist usage counters");
+        }
+        if (usageSeries != null && usageSeries.isDirty()) {
+            try {
+                usageSeries.save(getFilesDir());
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to persist usage series", e);
+            }
+        }
+        if (usageDb != null && usageDb.hasPending()) {
+            try {
+                usageDb.flush();
+            } catch (SQLException e) {
+                Log.e(TAG, "Failed to write usage sessions, retrying on the next flush", e);
+            }
+        }
+        if (session.isInContent() || counters.isDirty() || (usageDb != null && usageDb.hasPending())) {
+            scheduleCounterFlush();
+        }
+    }
+
+    // Runs on every content event; outside the day's first call it is one comparison
     private void ensureDailyState() {
-        String today = new java.text.SimpleDateFormat("yyyy-MM-dd", java.util.Locale.US).format(new java.util.Date());
-        String stored = prefs.getString(DAILY_DATE_KEY, null);
-        if (stored == null || !stored.equals(today)) {
-            prefs.edit()
-                .putString(DAILY_DATE_KEY, today)
-                .putLong(DAILY_ACCUMULATED_MS_KEY, 0)
-                .putLong(INSTAGRAM_DAILY_MS_KEY, 0)
-                .putLong(YOUTUBE_DAILY_MS_KEY, 0)
-                .putBoolean(DAILY_HALF_SHOWN_KEY, false)
-                .putBoolean(DAILY_LIMIT_REACHED_KEY, false)
-                .apply();
+        long now = System.currentTimeMillis();
+        if (dayClock.isCurrent(now)) return;
+        // Time up to here still belongs to the day that just ended
+        long elapsedNow = SystemClock.elapsedRealtime();
+        checkpointSession(elapsedNow);
+        String today = dayClock.refresh(now);
+        if (counters.rollOverIfNeeded(today)) {
             Log.d(TAG, "Daily state reset for date: " + today);
+            scheduleCounterFlush();
+            if (session.isInContent()) {
+                // Both thresholds are open again for the new day
+                armThresholds(elapsedNow);
+            }
         }
     }
 
+    private void onClockChanged(String action) {
+        Log.d(TAG, "Clock changed (" + action + "), recomputing the day boundary");
+        dayClock.invalidate();
+        // Re-arms the thresholds itself if the day rolled over
+        ensureDailyState();
+    }
+
     private long getConfiguredLimitMs() {
-        long defaultMinutes = 5; // default 5 minutes
-        ContentMonitorModule module = ContentMonitorModule.getInstance();
-        ReadableMap config = module != null ? module.getOverlayConfig() : null;
-        if (config != null && config.hasKey("timerMinutes")) {
-            try {
-                int min = config.getInt("timerMinutes");
-                if (min > 0) return min * 60L * 1000L;
-            } catch (Exception ignored) {}
-        }
-        return defaultMinutes * 60L * 1000L;
+        return OverlayConfig.get().limitMs;
     }
 
     private void showOverlay(long totalElapsedMsToday, boolean allowClose) {
@@ -354,25 +606,44 @@ public class ContentMonitorService extends AccessibilityService {
         }
 
         if (!isCurrentPlatformSectionActive()) {
-            Log.d(TAG, "Skipping overlay because tracked section is not active for platform: " + currentPlatform);
+            Log.d(TAG, "Skipping overlay because tracked section is not active for platform: " + session.getPlatform());
             return;
         }
 
-        if (isOverlayShowing) {
+        if (session.isOverlayShowing()) {
             Log.d(TAG, "Overlay already showing");
             return;
         }
 
+        // Decided on the worker; the window itself can only be added from the UI thread
+        String platform = session.getPlatform();
+        long shownAt = SystemClock.elapsedRealtime();
+        session.onOverlayShown(shownAt);
+        mainHandler.post(() -> attachOverlay(totalElapsedMsToday, shownAt, allowClose, platform));
+    }
+
+    // totalElapsedMsToday was measured at shownAt; the countdown carries it forward
+    private void attachOverlay(long totalElapsedMsToday, long shownAt, boolean allowClose, String platform) {
+        long startNs = System.nanoTime();
         if (windowManager == null) {
             windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
         }
 
         if (overlayView != null) {
-            removeOverlay();
+            detachOverlay();
         }
 
-        // Create custom overlay based on React Native configuration
-        overlayView = createCustomOverlay(totalElapsedMsToday, allowClose);
+        // Reuse the cached overlay tree; it is only rebuilt when the config changes
+        if (overlayCache == null) {
+            overlayCache = new OverlayViewCache(this, () -> {
+                detachOverlay();
+                postToWorker(this::onOverlayDismissed);
+            }, chooseLiteOverlay());
+        }
+        OverlayConfig config = OverlayConfig.get();
+        overlayView = overlayCache.obtain(config, allowClose);
+        boolean lite = overlayCache.isLite();
+        overlayCountdown.start(overlayCache, config.limitMs, totalElapsedMsToday, shownAt);
 
         int screenHeight = getResources().getDisplayMetrics().heightPixels;
         int desiredHeight = (int) (screenHeight * 0.85f); // leave bottom space for navigation
@@ -386,190 +657,67 @@ public class ContentMonitorService extends AccessibilityService {
         );
         params.gravity = android.view.Gravity.TOP;
         params.y = dpToPx(16);
+        if (lite) {
+            // Windows added from a service aren't accelerated by default; the hardware bitmap needs it
+            params.flags |= WindowManager.LayoutParams.FLAG_HARDWARE_ACCELERATED;
+        }
 
         try {
             windowManager.addView(overlayView, params);
-            isOverlayShowing = true;
+            diagnostics.recordNanos(ServiceDiagnostics.OVERLAY_ATTACH_NS, System.nanoTime() - startNs);
+            diagnostics.increment(ServiceDiagnostics.OVERLAYS_SHOWN);
+            if (lite) {
+                diagnostics.increment(ServiceDiagnostics.LITE_OVERLAYS_SHOWN);
+            }
+            watchFirstFrame(overlayView, startNs, lite);
             Log.d(TAG, "Overlay displayed");
-            sendEventToReactNative("ContentEvent", createEventMap("Overlay Shown", currentPlatform, getTotalTimeSpent()));
+            postToWorker(() -> {
+                logTransition(SessionEventLog.TYPE_OVERLAY_SHOWN, platform, 0);
+                events.onStatus("Overlay Shown", platform, getTotalTimeSpent());
+            });
         } catch (Exception e) {
             Log.e(TAG, "Failed to display overlay", e);
+            diagnostics.increment(ServiceDiagnostics.OVERLAY_FAILURES);
+            overlayCountdown.stop();
+            overlayView = null;
+            postToWorker(() -> session.onOverlayRemoved(SystemClock.elapsedRealtime()));
         }
     }
 
-    private View createCustomOverlay(long totalElapsedMsToday, boolean allowClose) {
-        long limitMs = getConfiguredLimitMs();
-        long remainingMs = Math.max(0, limitMs - totalElapsedMsToday);
-        // Get configuration from React Native
-        ContentMonitorModule module = ContentMonitorModule.getInstance();
-        ReadableMap config = module != null ? module.getOverlayConfig() : null;
-        com.facebook.react.bridge.ReadableArray todosArray = null;
-        String visionBase64 = null;
-        if (config != null) {
-            if (config.hasKey("todos")) {
-                try { todosArray = config.getArray("todos"); } catch (Exception ignored) {}
-            }
-            if (config.hasKey("visionBase64")) {
-                try { visionBase64 = config.getString("visionBase64"); } catch (Exception ignored) {}
-            }
-        }
-
-        // Create scrollable container to ensure all content remains visible
-        ScrollView scrollView = new ScrollView(this);
-        scrollView.setFillViewport(true);
-
-        LinearLayout mainContainer = new LinearLayout(this);
-        mainContainer.setOrientation(LinearLayout.VERTICAL);
-        mainContainer.setGravity(Gravity.CENTER);
-        mainContainer.setPadding(dpToPx(24), dpToPx(32), dpToPx(24), dpToPx(32));
-
-        // Apply background configuration
-        GradientDrawable background = new GradientDrawable();
-        if (config != null && config.hasKey("backgroundColor")) {
-            try {
-                String bgColor = config.getString("backgroundColor");
-                background.setColor(Color.parseColor(bgColor));
-            } catch (Exception e) {
-                background.setColor(Color.parseColor("#5865F2")); // Default blue
-            }
-        } else {
-            background.setColor(Color.parseColor("#5865F2")); // Default blue
-        }
-        background.setCornerRadius(dpToPx(16));
-        mainContainer.setBackground(background);
-
-        // Title text
-        TextView titleText = new TextView(this);
-        String titleMessage = "Stop Doom Scrolling.\n Make time for what\ntruly matters.";
-        if (config != null && config.hasKey("title")) {
-            titleMessage = config.getString("title");
-        }
-        titleText.setText(titleMessage);
-        titleText.setTextColor(Color.WHITE);
-        titleText.setTextSize(TypedValue.COMPLEX_UNIT_SP, 22);
-        titleText.setGravity(Gravity.CENTER);
-        titleText.setTypeface(null, android.graphics.Typeface.BOLD);
-
-        LinearLayout.LayoutParams titleParams = new LinearLayout.LayoutParams(
-            ViewGroup.LayoutParams.WRAP_CONTENT,
-            ViewGroup.LayoutParams.WRAP_CONTENT
-        );
-        titleParams.bottomMargin = dpToPx(24);
-        titleText.setLayoutParams(titleParams);
-        mainContainer.addView(titleText);
+    // "lite"/"full" force a mode; "auto" picks lite on low-RAM devices or once
+    // the full overlay has been measured too slow (remembered across restarts)
+    private boolean chooseLiteOverlay() {
+        SharedPreferences settings = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        String mode = settings.getString(OVERLAY_MODE_KEY, OVERLAY_MODE_AUTO);
+        overlayAutoMode = OVERLAY_MODE_AUTO.equals(mode);
+        if (!overlayAutoMode) {
+            return OVERLAY_MODE_LITE.equals(mode);
+        }
+        ActivityManager activityManager = (ActivityManager) getSystemService(ACTIVITY_SERVICE);
+        return (activityManager != null && activityManager.isLowRamDevice())
+            || settings.getBoolean(OVERLAY_LITE_MEASURED_KEY, false);
+    }
 
-        // Optional vision image
-        if (visionBase64 != null && !visionBase64.isEmpty()) {
-            try {
-                byte[] decoded = android.util.Base64.decode(visionBase64, android.util.Base64.DEFAULT);
-                android.graphics.Bitmap bitmap = android.graphics.BitmapFactory.decodeByteArray(decoded, 0, decoded.length);
-                if (bitmap != null) {
-                    ImageView imageView = new ImageView(this);
-                    imageView.setImageBitmap(bitmap);
-                    imageView.setAdjustViewBounds(true);
-                    imageView.setScaleType(ImageView.ScaleType.FIT_CENTER);
-                    LinearLayout.LayoutParams imgParams = new LinearLayout.LayoutParams(
-                        ViewGroup.LayoutParams.MATCH_PARENT,
-                        ViewGroup.LayoutParams.WRAP_CONTENT
-                    );
-                    imgParams.bottomMargin = dpToPx(24);
-                    imageView.setLayoutParams(imgParams);
-                    imageView.setMaxHeight(dpToPx(380));
-                    mainContainer.addView(imageView);
+    // Time from the start of attachOverlay to the overlay's first drawn frame
+    private void watchFirstFrame(View view, long startNs, boolean lite) {
+        view.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            private boolean seen = false;
+
+            @Override
+            public void onDraw() {
+                if (seen) return;
+                seen = true;
+                long nanos = System.nanoTime() - startNs;
+                // Draw listeners can't be removed while they are being dispatched
+                view.post(() -> view.getViewTreeObserver().removeOnDrawListener(this));
+                diagnostics.recordNanos(ServiceDiagnostics.OVERLAY_FIRST_FRAME_NS, nanos);
+                if (overlayAutoMode && overlayCache != null && overlayCache.onFirstFrame(lite, nanos)) {
+                    getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit()
+                        .putBoolean(OVERLAY_LITE_MEASURED_KEY, true)
+                        .apply();
                 }
-            } catch (Exception ignored) {}
-        }
-
-        // Optional todos list
-        if (todosArray != null && todosArray.size() > 0) {
-            LinearLayout listContainer = new LinearLayout(this);
-            listContainer.setOrientation(LinearLayout.VERTICAL);
-            listContainer.setGravity(Gravity.CENTER_HORIZONTAL);
-            LinearLayout.LayoutParams listParams = new LinearLayout.LayoutParams(
-                ViewGroup.LayoutParams.MATCH_PARENT,
-                ViewGroup.LayoutParams.WRAP_CONTENT
-            );
-            listParams.bottomMargin = dpToPx(20);
-            listContainer.setLayoutParams(listParams);
-
-            TextView listTitle = new TextView(this);
-            listTitle.setText("Your Pending work");
-            listTitle.setTextColor(Color.WHITE);
-            listTitle.setTextSize(TypedValue.COMPLEX_UNIT_SP, 16);
-            listTitle.setTypeface(null, android.graphics.Typeface.BOLD);
-            listTitle.setGravity(Gravity.CENTER);
-            LinearLayout.LayoutParams lt = new LinearLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT);
-            lt.bottomMargin = dpToPx(8);
-            listTitle.setLayoutParams(lt);
-            listContainer.addView(listTitle);
-
-            for (int i = 0; i < todosArray.size(); i++) {
-                try {
-                    String item = todosArray.getString(i);
-                    TextView tv = new TextView(this);
-                    tv.setText("* " + item);
-                    tv.setTextColor(Color.WHITE);
-                    tv.setTextSize(TypedValue.COMPLEX_UNIT_SP, 14);
-                    tv.setGravity(Gravity.START);
-                    LinearLayout.LayoutParams ip = new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
-                    ip.bottomMargin = dpToPx(4);
-                    tv.setLayoutParams(ip);
-                    listContainer.addView(tv);
-                } catch (Exception ignored) {}
             }
-            mainContainer.addView(listContainer);
-        }
-
-        if (allowClose) {
-            // Close button
-            Button closeButton = new Button(this);
-            String buttonText = "Close";
-            if (config != null && config.hasKey("buttonText")) {
-                buttonText = config.getString("buttonText");
-            }
-            closeButton.setText(buttonText);
-            closeButton.setTextColor(Color.WHITE);
-            closeButton.setTextSize(TypedValue.COMPLEX_UNIT_SP, 16);
-            closeButton.setTypeface(null, android.graphics.Typeface.BOLD);
-
-            GradientDrawable buttonBackground = new GradientDrawable();
-            buttonBackground.setColor(Color.BLACK);
-            buttonBackground.setCornerRadius(dpToPx(16));
-            closeButton.setBackground(buttonBackground);
-            closeButton.setPadding(0, dpToPx(12), 0, dpToPx(12));
-
-            LinearLayout.LayoutParams buttonParams = new LinearLayout.LayoutParams(
-                ViewGroup.LayoutParams.MATCH_PARENT,
-                ViewGroup.LayoutParams.WRAP_CONTENT
-            );
-            buttonParams.setMargins(dpToPx(24), 0, dpToPx(24), 0);
-            closeButton.setLayoutParams(buttonParams);
-
-            closeButton.setOnClickListener(v -> {
-                removeOverlay();
-                // continue counting without reset
-                AccessibilityNodeInfo currentRoot = getRootInActiveWindow();
-                boolean stillInContent = false;
-                if (currentRoot != null) {
-                    if (PLATFORM_INSTAGRAM.equals(currentPlatform) && isReelsSectionActive(currentRoot)) {
-                        stillInContent = true;
-                    } else if (PLATFORM_YOUTUBE.equals(currentPlatform) && isYouTubeShortsActive(currentRoot)) {
-                        stillInContent = true;
-                    }
-                }
-                if (stillInContent) {
-                    isInContent = true;
-                    contentStartTime = System.currentTimeMillis();
-                    Log.d(TAG, "Overlay dismissed, continue tracking");
-                    sendEventToReactNative("ContentEvent", createEventMap("Overlay Dismissed", currentPlatform, getTotalTimeSpent()));
-                }
-            });
-
-            mainContainer.addView(closeButton);
-        }
-
-        scrollView.addView(mainContainer, new ScrollView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
-        return scrollView;
+        });
     }
 
     private int dpToPx(int dp) {
@@ -577,120 +725,249 @@ public class ContentMonitorService extends AccessibilityService {
         return Math.round(dp * density);
     }
 
-    private void removeOverlay() {
+    // The close button already detached the view; the session itself never restarts
+    private void onOverlayDismissed() {
+        long now = SystemClock.elapsedRealtime();
+        if (isCurrentPlatformSectionActive()) {
+            session.onOverlayDismissed(now);
+        } else {
+            session.onSectionLeft(session.getPlatform(), now);
+        }
+    }
+
+    private void detachOverlay() {
+        overlayCountdown.stop();
         if (overlayView != null && windowManager != null) {
             try {
                 windowManager.removeView(overlayView);
-                overlayView = null;
-                isOverlayShowing = false;
                 Log.d(TAG, "Overlay removed");
             } catch (Exception e) {
                 Log.e(TAG, "Failed to remove overlay", e);
             }
         }
+        overlayView = null;
     }
 
-    private boolean isReelsSectionActive(AccessibilityNodeInfo node) {
-        if (node == null) return false;
+    private void postToWorker(Runnable task) {
+        Handler handler = workerHandler;
+        if (handler != null) {
+            handler.post(task);
+        }
+    }
 
-        if (node.getText() != null &&
-            (node.getText().toString().toLowerCase().contains("reels") ||
-             node.getText().toString().toLowerCase().contains("explore"))) {
-            return true;
+    private void loadDetectionRules() {
+        try {
+            DetectionRules rules = readDetectionRules();
+            ruleKeywords = rules.keywords;
+            snapshot = new TreeSnapshot(rules.keywords, SNAPSHOT_MAX_DEPTH, SNAPSHOT_MAX_NODES);
+            detectors = rules.createRegistry();
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to load detection rules, nothing will be tracked", e);
         }
+    }
 
-        for (int i = 0; i < node.getChildCount(); i++) {
-            AccessibilityNodeInfo child = node.getChild(i);
-            if (child != null) {
-                boolean result = isReelsSectionActive(child);
-                child.recycle();
-                if (result) return true;
+    // Prefers an override in filesDir; falls back to the bundled asset if it is missing or invalid
+    private DetectionRules readDetectionRules() throws IOException, JSONException {
+        File override = new File(getFilesDir(), DetectionRules.FILE_NAME);
+        if (override.exists()) {
+            try (InputStream in = new FileInputStream(override)) {
+                return DetectionRules.parse(DetectionRules.readFully(in));
+            } catch (IOException | JSONException | IllegalArgumentException e) {
+                Log.e(TAG, "Ignoring invalid " + override, e);
             }
         }
-        return false;
+        try (InputStream in = getAssets().open(DetectionRules.FILE_NAME)) {
+            return DetectionRules.parse(DetectionRules.readFully(in));
+        }
     }
 
-    private boolean isYouTubeShortsActive(AccessibilityNodeInfo node) {
-        if (node == null) return false;
-
-        String textLower = "";
-        CharSequence text = node.getText();
-        if (text != null) {
-            textLower = text.toString().toLowerCase(java.util.Locale.US).trim();
-        }
+    public interface CounterReader {
+        void onCounters(long instagramTodayMs, long youtubeTodayMs, long totalTodayMs,
+                        long totalTimeMs, int sessionCount, String lastSessionDate);
+    }
 
-        String descLower = "";
-        CharSequence contentDesc = node.getContentDescription();
-        if (contentDesc != null) {
-            descLower = contentDesc.toString().toLowerCase(java.util.Locale.US);
-        }
+    // Reads the live counters on the worker, including the running session.
+    // Returns false when the service isn't running (the prefs are then current).
+    static boolean readCounters(CounterReader reader) {
+        ContentMonitorService service = instance;
+        if (service == null || service.workerHandler == null) return false;
+        service.workerHandler.post(() -> {
+            service.ensureDailyState();
+            service.checkpointSession(SystemClock.elapsedRealtime());
+            DailyCounterStore counters = service.counters;
+            reader.onCounters(counters.getInstagramDailyMs(), counters.getYoutubeDailyMs(),
+                counters.getDailyAccumulatedMs(), counters.getTotalTimeMs(), counters.getSessionCount(),
+                counters.getLastSessionDate());
+        });
+        return true;
+    }
 
-        String viewIdLower = "";
-        String viewId = node.getViewIdResourceName();
-        if (viewId != null) {
-            viewIdLower = viewId.toLowerCase(java.util.Locale.US);
-        }
+    // Live series of the running service, or null (the module then reads the file)
+    static UsageTimeSeries getUsageSeries() {
+        ContentMonitorService service = instance;
+        return service != null ? service.usageSeries : null;
+    }
 
-        // Only treat tab indicators as Shorts when the Shorts tab is selected.
-        boolean isShortsTabNode =
-            textLower.equals("shorts") ||
-            (descLower.contains("shorts") && descLower.contains("tab")) ||
-            (viewIdLower.contains("pivot_bar") && textLower.equals("shorts"));
-        boolean isSelectedShortsTab = isShortsTabNode && (node.isSelected() || descLower.contains("selected"));
-        if (isSelectedShortsTab) {
-            return true;
+    // Called by the module after persisting a new interval; 0 stops the dump
+    static void setDiagnosticsDumpInterval(long intervalMs) {
+        ContentMonitorService service = instance;
+        if (service != null) {
+            service.postToWorker(() -> service.setDiagnosticsDumpIntervalOnWorker(intervalMs));
         }
+    }
 
-        // Strong Shorts player indicators (avoids false positives on Home/long-form pages).
-        if (descLower.contains("shorts player") ||
-            (descLower.contains("shorts") && descLower.contains("player"))) {
-            return true;
-        }
-        if (viewIdLower.contains("reel_player") ||
-            viewIdLower.contains("shorts_player") ||
-            viewIdLower.contains("shorts_video") ||
-            viewIdLower.contains("shorts_reel")) {
-            return true;
+    private void setDiagnosticsDumpIntervalOnWorker(long intervalMs) {
+        diagnosticsDumpIntervalMs = Math.max(0, intervalMs);
+        workerHandler.removeCallbacks(diagnosticsDumpTask);
+        if (diagnosticsDumpIntervalMs > 0) {
+            workerHandler.postDelayed(diagnosticsDumpTask, diagnosticsDumpIntervalMs);
         }
+    }
 
-        // Recursive check on children
-        for (int i = 0; i < node.getChildCount(); i++) {
-            AccessibilityNodeInfo child = node.getChild(i);
-            if (child != null) {
-                boolean result = isYouTubeShortsActive(child);
-                child.recycle();
-                if (result) return true;
+    // Appends one JSON line per interval; the file is rotated once to .1 when it grows too big
+    private void dumpDiagnostics() {
+        if (diagnosticsDumpIntervalMs <= 0) return;
+        File file = new File(getFilesDir(), DIAGNOSTICS_FILE_NAME);
+        try {
+            if (file.length() > DIAGNOSTICS_MAX_FILE_BYTES
+                    && !file.renameTo(new File(getFilesDir(), DIAGNOSTICS_FILE_NAME + ".1"))) {
+                Log.w(TAG, "Failed to rotate " + file);
+            }
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+                out.write(diagnostics.toJson(System.currentTimeMillis()).toString());
+                out.write('\n');
             }
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Failed to dump diagnostics", e);
         }
-
-        return false;
+        workerHandler.postDelayed(diagnosticsDumpTask, diagnosticsDumpIntervalMs);
     }
 
-    private boolean isCurrentPlatformSectionActive() {
-        AccessibilityNodeInfo rootNode = getRootInActiveWindow();
-        if (rootNode == null) return false;
+    // Recorder mode for the detection corpus: label is the platform the tester
+    // is about to show ("instagram", "youtube" or "none"); null stops recording
+    static void setRecordingLabel(String label) {
+        ContentMonitorService service = instance;
+        if (service == null) return;
+        service.postToWorker(() -> {
+            if (label == null || service.ruleKeywords == null) {
+                service.treeRecorder = null;
+                return;
+            }
+            service.treeRecorder = new TreeRecorder(service.getFilesDir(), label, service.ruleKeywords,
+                SNAPSHOT_MAX_DEPTH, SNAPSHOT_MAX_NODES);
+            Log.d(TAG, "Recording " + label + " windows to " + service.treeRecorder.getFile());
+        });
+    }
 
-        if (PLATFORM_INSTAGRAM.equals(currentPlatform)) {
-            return isReelsSectionActive(rootNode);
+    // Classifies the active window with the given platform's detector
+    private boolean isSectionActive(PlatformDetector detector) {
+        // Nothing structural changed in this window since the last look
+        if (handlingEvent) {
+            int cached = screenCache.lookup(eventWindowId, detector.getPackageName());
+            if (cached != ScreenStateCache.MISS) {
+                diagnostics.increment(ServiceDiagnostics.CACHE_HITS);
+                return cached == ScreenStateCache.HIT_ACTIVE;
+            }
+            diagnostics.increment(ServiceDiagnostics.CACHE_MISSES);
+        }
+
+        long startNs = System.nanoTime();
+        ScreenClassifier.Result result = null;
+        if (!snapshotCaptured) {
+            // The framework resolves anchor ids without us walking the tree; a
+            // deciding anchor saves the capture
+            AccessibilityNodeInfo root = getRootInActiveWindow();
+            result = root != null ? AnchorProbe.probe(detector.getAnchors(), root) : null;
+            if (result != null) {
+                root.recycle();
+            } else {
+                captureSnapshot(root);
+            }
         }
-
-        if (PLATFORM_YOUTUBE.equals(currentPlatform)) {
-            return isYouTubeShortsActive(rootNode);
+        // Only a snapshot result knows the anchor's ancestors; without them any
+        // structural change in the window invalidates the cached result
+        String[] anchorPath = null;
+        if (result == null) {
+            if (!snapshot.hasRoot()) return false;
+            result = detector.detect(snapshot);
+            if (result.anchorIndex >= 0) {
+                anchorPath = snapshot.getViewIdPath(result.anchorIndex);
+            }
+        }
+        diagnostics.recordNanos(ServiceDiagnostics.CLASSIFY_NS, System.nanoTime() - startNs);
+        diagnostics.increment(ServiceDiagnostics.CLASSIFICATIONS);
+        diagnostics.record(ServiceDiagnostics.NODES_VISITED, result.nodesVisited);
+        if (result.budgetExhausted) {
+            diagnostics.increment(ServiceDiagnostics.BUDGET_EXHAUSTED);
+            Log.d(TAG, "Classifier budget exhausted for " + detector.getPlatform() + ": visited "
+                + result.nodesVisited + " nodes, depth " + result.depthReached);
         }
+        if (handlingEvent) {
+            screenCache.store(eventWindowId, detector.getPackageName(), result.matched, anchorPath);
+        }
+        return result.matched;
+    }
 
-        return false;
+    // Inside an event the first capture is reused; outside one (threshold alarms,
+    // overlay dismissal) every call reflects the window as it is now.
+    private void captureSnapshot(AccessibilityNodeInfo root) {
+        treeCapture.capture(snapshot, root);
+        snapshotCaptured = handlingEvent;
+    }
+
+    private boolean isCurrentPlatformSectionActive() {
+        PlatformDetector detector = detectors.forPlatform(session.getPlatform());
+        return detector != null && isSectionActive(detector);
     }
 
     @Override
     public void onInterrupt() {
         Log.d(TAG, "Service interrupted");
-        removeOverlay();
+        postToWorker(() -> {
+            if (eventCoalescer != null) {
+                eventCoalescer.cancel();
+            }
+            flushCounters();
+            session.onOverlayRemoved(SystemClock.elapsedRealtime());
+        });
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
-        removeOverlay();
+        if (instance == this) {
+            instance = null;
+        }
+        if (clockReceiverRegistered) {
+            unregisterReceiver(clockReceiver);
+            clockReceiverRegistered = false;
+        }
+        // The final flush needs workerHandler, so the worker itself clears it and quits
+        HandlerThread thread = workerThread;
+        postToWorker(() -> {
+            if (eventCoalescer != null) {
+                eventCoalescer.cancel();
+            }
+            stopTimeUpdates();
+            thresholdScheduler.cancel();
+            flushCounters();
+            if (sessionLog != null) {
+                sessionLog.close();
+                sessionLog = null;
+            }
+            if (usageDb != null) {
+                usageDb.close();
+                usageDb = null;
+            }
+            workerHandler = null;
+            workerThread = null;
+            thread.quitSafely();
+        });
+        detachOverlay();
+        if (overlayCache != null) {
+            overlayCache.release();
+            overlayCache = null;
+        }
         Log.d(TAG, "Service destroyed");
     }
 }
@@ -0,0 +1,54 @@
+package com.detoxie;
+
+import android.content.SharedPreferences;
+
+// Maps DailyCounterStore onto its ContentMonitorPrefs keys
+final class DailyCounterPrefs {
+    static final String TOTAL_TIME_KEY = "total_time_spent";
+    static final String SESSION_COUNT_KEY = "session_count";
+    static final String LAST_SESSION_DATE_KEY = "last_session_date";
+
+    // Daily gating keys (shared across platforms)
+    static final String DAILY_DATE_KEY = "daily_date";
+    static final String DAILY_ACCUMULATED_MS_KEY = "daily_accumulated_ms";
+    static final String DAILY_HALF_SHOWN_KEY = "daily_half_shown";
+    static final String DAILY_LIMIT_REACHED_KEY = "daily_limit_reached";
+
+    // Per-platform daily tracking keys
+    static final String INSTAGRAM_DAILY_MS_KEY = "instagram_daily_ms";
+    static final String YOUTUBE_DAILY_MS_KEY = "youtube_daily_ms";
+
+    private DailyCounterPrefs() {}
+
+    static void load(DailyCounterStore counters, SharedPreferences prefs) {
+        counters.dailyDate = prefs.getString(DAILY_DATE_KEY, null);
+        counters.dailyAccumulatedMs = prefs.getLong(DAILY_ACCUMULATED_MS_KEY, 0);
+        counters.instagramDailyMs = prefs.getLong(INSTAGRAM_DAILY_MS_KEY, 0);
+        counters.youtubeDailyMs = prefs.getLong(YOUTUBE_DAILY_MS_KEY, 0);
+        counters.halfShown = prefs.getBoolean(DAILY_HALF_SHOWN_KEY, false);
+        counters.limitReached = prefs.getBoolean(DAILY_LIMIT_REACHED_KEY, false);
+        counters.totalTimeMs = prefs.getLong(TOTAL_TIME_KEY, 0);
+        counters.sessionCount = prefs.getInt(SESSION_COUNT_KEY, 0);
+        counters.lastSessionDate = prefs.getString(LAST_SESSION_DATE_KEY, "");
+        counters.dirty = false;
+    }
+
+    // Writes every counter in a single commit. commit() (not apply()) so the
+    // data is on disk when we return: a crash loses at most one flush interval.
+    static boolean flush(DailyCounterStore counters, SharedPreferences prefs) {
+        if (!counters.dirty) return true;
+        boolean ok = prefs.edit()
+            .putString(DAILY_DATE_KEY, counters.dailyDate)
+            .putLong(DAILY_ACCUMULATED_MS_KEY, counters.dailyAccumulatedMs)
+            .putLong(INSTAGRAM_DAILY_MS_KEY, counters.instagramDailyMs)
+            .putLong(YOUTUBE_DAILY_MS_KEY, counters.youtubeDailyMs)
+            .putBoolean(DAILY_HALF_SHOWN_KEY, counters.halfShown)
+            .putBoolean(DAILY_LIMIT_REACHED_KEY, counters.limitReached)
+            .putLong(TOTAL_TIME_KEY, counters.totalTimeMs)
+            .putInt(SESSION_COUNT_KEY, counters.sessionCount)
+            .putString(LAST_SESSION_DATE_KEY, counters.lastSessionDate)
+            .commit();
+        if (ok) counters.dirty = false;
+        return ok;
+    }
+}
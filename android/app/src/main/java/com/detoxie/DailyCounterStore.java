@@ -0,0 +1,80 @@
+package com.detoxie;
+
+// In-memory copy of the usage counters kept in ContentMonitorPrefs. The hot
+// path only touches these fields; DailyCounterPrefs loads them and writes them
+// back in one batched commit. Plain Java so the JMH benchmarks can drive it.
+// Not thread-safe: owned by the service worker thread.
+public class DailyCounterStore {
+    // Package-private for DailyCounterPrefs
+    String dailyDate;
+    long dailyAccumulatedMs;
+    long instagramDailyMs;
+    long youtubeDailyMs;
+    boolean halfShown;
+    boolean limitReached;
+
+    long totalTimeMs;
+    int sessionCount;
+    String lastSessionDate;
+
+    boolean dirty;
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    // Returns true when the stored day differs and the daily counters were reset
+    public boolean rollOverIfNeeded(String today) {
+        if (today.equals(dailyDate)) return false;
+        dailyDate = today;
+        dailyAccumulatedMs = 0;
+        instagramDailyMs = 0;
+        youtubeDailyMs = 0;
+        halfShown = false;
+        limitReached = false;
+        dirty = true;
+        return true;
+    }
+
+    // Credits content time to today's totals, the platform and the all-time total
+    public void addContentTime(String platform, long ms) {
+        if (ms <= 0) return;
+        dailyAccumulatedMs += ms;
+        totalTimeMs += ms;
+        if (Platforms.INSTAGRAM.equals(platform)) {
+            instagramDailyMs += ms;
+        } else if (Platforms.YOUTUBE.equals(platform)) {
+            youtubeDailyMs += ms;
+        }
+        dirty = true;
+    }
+
+    public void recordSessionEnd(String date) {
+        sessionCount++;
+        lastSessionDate = date;
+        dirty = true;
+    }
+
+    public void markHalfShown() {
+        if (!halfShown) {
+            halfShown = true;
+            dirty = true;
+        }
+    }
+
+    public void markLimitReached() {
+        if (!limitReached) {
+            limitReached = true;
+            dirty = true;
+        }
+    }
+
+    public long getDailyAccumulatedMs() { return dailyAccumulatedMs; }
+    public long getInstagramDailyMs() { return instagramDailyMs; }
+    public long getYoutubeDailyMs() { return youtubeDailyMs; }
+    public boolean isHalfShown() { return halfShown; }
+    public boolean isLimitReached() { return limitReached; }
+    public long getTotalTimeMs() { return totalTimeMs; }
+    public int getSessionCount() { return sessionCount; }
+    public String getLastSessionDate() { return lastSessionDate; }
+}
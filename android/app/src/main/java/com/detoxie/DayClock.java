@@ -0,0 +1,57 @@
+package com.detoxie;
+
+import java.text.DateFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+// Tracks the local calendar day for the daily counters. refresh() resolves the
+// day and the epoch millisecond of the next local midnight once (java.time,
+// so DST days that are 23 or 25 hours long come out right); until then
+// isCurrent() is a single long comparison with no allocation. Time zone and
+// wall clock changes must call invalidate(). Not thread-safe: owned by the
+// service worker thread.
+public final class DayClock {
+    private long dayStartMs = Long.MAX_VALUE;
+    private long nextMidnightMs = Long.MIN_VALUE; // forces the first refresh
+    private long epochDay;
+    private String today;
+    private String displayDate;
+
+    public boolean isCurrent(long nowMs) {
+        return nowMs < nextMidnightMs;
+    }
+
+    // Resolves the day containing nowMs and returns it as "yyyy-MM-dd"
+    public String refresh(long nowMs) {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate date = Instant.ofEpochMilli(nowMs).atZone(zone).toLocalDate();
+        dayStartMs = date.atStartOfDay(zone).toInstant().toEpochMilli();
+        nextMidnightMs = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        epochDay = date.toEpochDay();
+        today = date.toString();
+        displayDate = DateFormat.getDateInstance().format(new Date(nowMs));
+        return today;
+    }
+
+    // Local epoch day containing timeMs; the cached day when it falls inside it
+    public long epochDayAt(long timeMs) {
+        if (timeMs >= dayStartMs && timeMs < nextMidnightMs) return epochDay;
+        return Instant.ofEpochMilli(timeMs).atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    public void invalidate() {
+        nextMidnightMs = Long.MIN_VALUE;
+    }
+
+    // "yyyy-MM-dd" of the last refresh
+    public String getToday() {
+        return today;
+    }
+
+    // The same day in the default locale's medium format, shown as the last session date
+    public String getDisplayDate() {
+        return displayDate;
+    }
+}
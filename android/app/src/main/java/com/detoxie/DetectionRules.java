@@ -0,0 +1,158 @@
+package com.detoxie;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+// Declarative description of every tracked section, read from
+// detection_rules.json (the service prefers a copy in filesDir over the
+// bundled asset).
+// All keywords across all platforms are compiled into one KeywordMatcher so
+// the snapshot scans each node's text, description and view id once.
+//
+// A platform matches when one of its anchors resolves, or when any "match"
+// clause holds for some node. Within a clause every listed condition must hold:
+// "text"/"description"/"viewId" contain all keywords, "textEquals" is the whole
+// text, "selected" requires the node's selected flag.
+public final class DetectionRules {
+    static final String FILE_NAME = "detection_rules.json";
+
+    public static final class Clause {
+        final int text;
+        final int textEquals;
+        final int description;
+        final int viewId;
+        final boolean selected;
+
+        Clause(int text, int textEquals, int description, int viewId, boolean selected) {
+            this.text = text;
+            this.textEquals = textEquals;
+            this.description = description;
+            this.viewId = viewId;
+            this.selected = selected;
+        }
+
+        boolean matches(TreeSnapshot tree, int index) {
+            long textScan = tree.getTextMatch(index);
+            return (KeywordMatcher.contained(textScan) & text) == text
+                && (KeywordMatcher.whole(textScan) & textEquals) == textEquals
+                && (tree.getDescriptionMatch(index) & description) == description
+                && (tree.getViewIdMatch(index) & viewId) == viewId
+                && (!selected || tree.isSelected(index));
+        }
+    }
+
+    public static final class PlatformRule {
+        final String packageName;
+        final String platform;
+        final String sectionName;
+        final ScreenClassifier.Anchor[] anchors;
+        final Clause[] clauses;
+
+        PlatformRule(String packageName, String platform, String sectionName,
+                     ScreenClassifier.Anchor[] anchors, Clause[] clauses) {
+            this.packageName = packageName;
+            this.platform = platform;
+            this.sectionName = sectionName;
+            this.anchors = anchors;
+            this.clauses = clauses;
+        }
+    }
+
+    public final KeywordMatcher keywords;
+    private final PlatformRule[] platforms;
+
+    private DetectionRules(KeywordMatcher keywords, PlatformRule[] platforms) {
+        this.keywords = keywords;
+        this.platforms = platforms;
+    }
+
+    public DetectorRegistry createRegistry() {
+        DetectorRegistry registry = new DetectorRegistry();
+        for (PlatformRule rule : platforms) {
+            registry.register(new RuleBasedDetector(rule));
+        }
+        return registry;
+    }
+
+    public static DetectionRules parse(String json) throws JSONException {
+        LinkedHashMap<String, Integer> keywordBits = new LinkedHashMap<>();
+        JSONArray platformsJson = new JSONObject(json).getJSONArray("platforms");
+        PlatformRule[] platforms = new PlatformRule[platformsJson.length()];
+
+        for (int p = 0; p < platforms.length; p++) {
+            JSONObject platformJson = platformsJson.getJSONObject(p);
+
+            JSONArray anchorsJson = platformJson.optJSONArray("anchors");
+            int anchorCount = anchorsJson != null ? anchorsJson.length() : 0;
+            ScreenClassifier.Anchor[] anchors = new ScreenClassifier.Anchor[anchorCount];
+            for (int a = 0; a < anchorCount; a++) {
+                JSONObject anchorJson = anchorsJson.getJSONObject(a);
+                anchors[a] = new ScreenClassifier.Anchor(anchorJson.getString("viewId"),
+                    anchorJson.optBoolean("selected", false));
+            }
+
+            JSONArray clausesJson = platformJson.optJSONArray("match");
+            int clauseCount = clausesJson != null ? clausesJson.length() : 0;
+            List<Clause> clauses = new ArrayList<>(clauseCount);
+            for (int c = 0; c < clauseCount; c++) {
+                JSONObject clauseJson = clausesJson.getJSONObject(c);
+                Clause clause = new Clause(
+                    keywordMask(clauseJson, "text", keywordBits),
+                    keywordMask(clauseJson, "textEquals", keywordBits),
+                    keywordMask(clauseJson, "description", keywordBits),
+                    keywordMask(clauseJson, "viewId", keywordBits),
+                    clauseJson.optBoolean("selected", false));
+                if ((clause.text | clause.textEquals | clause.description | clause.viewId) == 0) {
+                    // Would match every node on screen
+                    throw new JSONException("Match clause without keywords in " + platformJson.getString("platform"));
+                }
+                clauses.add(clause);
+            }
+
+            platforms[p] = new PlatformRule(platformJson.getString("package"), platformJson.getString("platform"),
+                platformJson.getString("section"), anchors, clauses.toArray(new Clause[0]));
+        }
+
+        KeywordMatcher matcher = KeywordMatcher.compile(keywordBits.keySet().toArray(new String[0]));
+        return new DetectionRules(matcher, platforms);
+    }
+
+    // Assigns each distinct keyword its bit in the shared matcher
+    private static int keywordMask(JSONObject clause, String field, LinkedHashMap<String, Integer> keywordBits)
+            throws JSONException {
+        JSONArray values = clause.optJSONArray(field);
+        if (values == null) return 0;
+        int mask = 0;
+        for (int i = 0; i < values.length(); i++) {
+            String keyword = values.getString(i).toLowerCase(java.util.Locale.US);
+            Integer bit = keywordBits.get(keyword);
+            if (bit == null) {
+                if (keywordBits.size() == KeywordMatcher.MAX_KEYWORDS) {
+                    throw new JSONException("Too many distinct keywords, at most " + KeywordMatcher.MAX_KEYWORDS);
+                }
+                bit = keywordBits.size();
+                keywordBits.put(keyword, bit);
+            }
+            mask |= 1 << bit;
+        }
+        return mask;
+    }
+
+    static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,27 @@
+package com.detoxie;
+
+import java.util.HashMap;
+
+// Package and platform lookup for the registered detectors. Each event costs
+// one hash lookup no matter how many apps are monitored. Filled by
+// DetectionRules before it is published, never changed after that, so any
+// thread may read it.
+public class DetectorRegistry {
+    private final HashMap<String, PlatformDetector> byPackage = new HashMap<>();
+    private final HashMap<String, PlatformDetector> byPlatform = new HashMap<>();
+
+    public DetectorRegistry register(PlatformDetector detector) {
+        byPackage.put(detector.getPackageName(), detector);
+        byPlatform.put(detector.getPlatform(), detector);
+        return this;
+    }
+
+    // Null when the package is not monitored
+    public PlatformDetector forPackage(String packageName) {
+        return byPackage.get(packageName);
+    }
+
+    public PlatformDetector forPlatform(String platform) {
+        return platform == null ? null : byPlatform.get(platform);
+    }
+}
@@ -0,0 +1,78 @@
+package com.detoxie;
+
+import android.os.Handler;
+
+import java.util.HashMap;
+
+// Groups bursts of accessibility events per package so the classifier runs at
+// most once per window. When events move to another package, the previous
+// package's pending event is delivered right away, so a monitored app whose
+// events interleave with system UI or the keyboard is still classified in order
+// instead of being replaced window after window.
+public class EventCoalescer {
+
+    public interface Listener {
+        void onCoalesced(String packageName, int windowId);
+    }
+
+    private final class Pending implements Runnable {
+        final String packageName;
+        int windowId; // of the latest event
+        boolean scheduled;
+
+        Pending(String packageName) {
+            this.packageName = packageName;
+        }
+
+        @Override
+        public void run() {
+            scheduled = false;
+            listener.onCoalesced(packageName, windowId);
+        }
+    }
+
+    private final Handler handler;
+    private final Listener listener;
+    private final HashMap<String, Pending> pending = new HashMap<>();
+    private final long windowMs;
+    private String latestPackage;
+
+    public EventCoalescer(Handler handler, long windowMs, Listener listener) {
+        this.handler = handler;
+        this.windowMs = Math.max(0, windowMs);
+        this.listener = listener;
+    }
+
+    public void submit(String packageName, int windowId) {
+        if (latestPackage != null && !latestPackage.equals(packageName)) {
+            flush(pending.get(latestPackage));
+        }
+        latestPackage = packageName;
+
+        Pending entry = pending.get(packageName);
+        if (entry == null) {
+            entry = new Pending(packageName);
+            pending.put(packageName, entry);
+        }
+        entry.windowId = windowId;
+
+        if (!entry.scheduled) {
+            entry.scheduled = true;
+            handler.postDelayed(entry, windowMs);
+        }
+    }
+
+    private void flush(Pending entry) {
+        if (entry == null || !entry.scheduled) return;
+        handler.removeCallbacks(entry);
+        entry.run();
+    }
+
+    public void cancel() {
+        for (Pending entry : pending.values()) {
+            handler.removeCallbacks(entry);
+            entry.scheduled = false;
+        }
+        latestPackage = null;
+    }
+}
@@ -0,0 +1,165 @@
+package com.detoxie;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+// Aho-Corasick automaton over a fixed set of ASCII keywords (at most 32),
+// compiled once. scan() walks a CharSequence in a single pass with ASCII case
+// folding and no allocation, and reports which keywords occur anywhere in it
+// and which span the whole (trimmed) sequence. Immutable and thread-safe.
+public final class KeywordMatcher {
+    public static final int MAX_KEYWORDS = 32;
+
+    private static final int ALPHABET = 128;
+
+    private final String[] keywords;
+    private final int[] lengths;
+    private final int[] transitions; // state * ALPHABET + char -> state
+    private final int[] outputs;     // keywords ending in each state, failure outputs merged
+
+    private KeywordMatcher(String[] keywords, int[] transitions, int[] outputs) {
+        this.keywords = keywords;
+        this.lengths = new int[keywords.length];
+        for (int i = 0; i < keywords.length; i++) {
+            lengths[i] = keywords[i].length();
+        }
+        this.transitions = transitions;
+        this.outputs = outputs;
+    }
+
+    // Keywords are matched case-insensitively; their index is their bit in scan results
+    public static KeywordMatcher compile(String[] keywords) {
+        if (keywords.length > MAX_KEYWORDS) {
+            throw new IllegalArgumentException("At most " + MAX_KEYWORDS + " keywords, got " + keywords.length);
+        }
+        String[] folded = new String[keywords.length];
+        int maxStates = 1;
+        for (int i = 0; i < keywords.length; i++) {
+            String keyword = keywords[i];
+            if (keyword.isEmpty()) {
+                throw new IllegalArgumentException("Empty keyword");
+            }
+            StringBuilder sb = new StringBuilder(keyword.length());
+            for (int c = 0; c < keyword.length(); c++) {
+                char ch = keyword.charAt(c);
+                if (ch >= ALPHABET) {
+                    throw new IllegalArgumentException("Non-ASCII keyword: " + keyword);
+                }
+                sb.append(fold(ch));
+            }
+            folded[i] = sb.toString();
+            maxStates += keyword.length();
+        }
+
+        // Trie; -1 marks a missing edge until failure links fill it in
+        int[] next = new int[maxStates * ALPHABET];
+        Arrays.fill(next, -1);
+        int[] out = new int[maxStates];
+        int states = 1;
+        for (int i = 0; i < folded.length; i++) {
+            int state = 0;
+            for (int c = 0; c < folded[i].length(); c++) {
+                int slot = state * ALPHABET + folded[i].charAt(c);
+                if (next[slot] < 0) {
+                    next[slot] = states++;
+                }
+                state = next[slot];
+            }
+            out[state] |= 1 << i;
+        }
+
+        // Breadth-first failure links, turning the trie into a full DFA
+        int[] fail = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int ch = 0; ch < ALPHABET; ch++) {
+            int target = next[ch];
+            if (target < 0) {
+                next[ch] = 0;
+            } else {
+                fail[target] = 0;
+                queue.add(target);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            out[state] |= out[fail[state]];
+            for (int ch = 0; ch < ALPHABET; ch++) {
+                int slot = state * ALPHABET + ch;
+                int target = next[slot];
+                int fallback = next[fail[state] * ALPHABET + ch];
+                if (target < 0) {
+                    next[slot] = fallback;
+                } else {
+                    fail[target] = fallback;
+                    queue.add(target);
+                }
+            }
+        }
+
+        return new KeywordMatcher(folded, Arrays.copyOf(next, states * ALPHABET), Arrays.copyOf(out, states));
+    }
+
+    public int size() {
+        return keywords.length;
+    }
+
+    public String getKeyword(int index) {
+        return keywords[index];
+    }
+
+    // Bit for the keyword, or 0 when it isn't part of this matcher
+    public int maskOf(String keyword) {
+        for (int i = 0; i < keywords.length; i++) {
+            if (keywords[i].equalsIgnoreCase(keyword)) return 1 << i;
+        }
+        return 0;
+    }
+
+    // Low 32 bits: keywords contained in text. High 32 bits: keywords equal to
+    // the whole text once surrounding whitespace is ignored. 0 for null.
+    public long scan(CharSequence text) {
+        if (text == null) return 0;
+        int length = text.length();
+
+        int first = 0;
+        while (first < length && text.charAt(first) <= ' ') first++;
+        int last = length - 1;
+        while (last >= first && text.charAt(last) <= ' ') last--;
+
+        int contained = 0;
+        int whole = 0;
+        int state = 0;
+        for (int i = first; i <= last; i++) {
+            char ch = text.charAt(i);
+            if (ch >= ALPHABET) {
+                // No keyword contains it, so every partial match dies here
+                state = 0;
+                continue;
+            }
+            state = transitions[state * ALPHABET + fold(ch)];
+            int found = outputs[state];
+            if (found != 0) {
+                contained |= found;
+                if (i == last) {
+                    for (int bits = found; bits != 0; bits &= bits - 1) {
+                        int k = Integer.numberOfTrailingZeros(bits);
+                        if (i - lengths[k] + 1 == first) whole |= 1 << k;
+                    }
+                }
+            }
+        }
+        return ((long) whole << 32) | (contained & 0xFFFFFFFFL);
+    }
+
+    public static int contained(long scanResult) {
+        return (int) scanResult;
+    }
+
+    public static int whole(long scanResult) {
+        return (int) (scanResult >>> 32);
+    }
+
+    private static char fold(char ch) {
+        return ch >= 'A' && ch <= 'Z' ? (char) (ch + ('a' - 'A')) : ch;
+    }
+}
@@ -0,0 +1,41 @@
+package com.detoxie;
+
+// Daily gating decisions: which overlay a given amount of usage today calls
+// for, and how long until each threshold is crossed. Pure functions so the
+// service, ThresholdScheduler and the JMH benchmarks share one definition.
+public final class LimitPolicy {
+    public static final int THRESHOLD_HALF = 0;
+    public static final int THRESHOLD_FULL = 1;
+
+    public static final int ACTION_NONE = 0;
+    // Closable overlay, then mark the half threshold shown
+    public static final int ACTION_SHOW_HALF = 1;
+    // Mark the limit reached, then a blocking overlay
+    public static final int ACTION_REACH_LIMIT = 2;
+    // Limit was already reached today: blocking overlay again
+    public static final int ACTION_SHOW_LIMIT = 3;
+
+    private LimitPolicy() {}
+
+    public static int decide(long elapsedTodayMs, long limitMs, boolean halfShown, boolean limitReached) {
+        if (limitReached) return ACTION_SHOW_LIMIT;
+        if (!halfShown && elapsedTodayMs >= limitMs / 2) return ACTION_SHOW_HALF;
+        if (elapsedTodayMs >= limitMs) return ACTION_REACH_LIMIT;
+        return ACTION_NONE;
+    }
+
+    // Milliseconds until the threshold is crossed, 0 when it is crossed but not
+    // yet handled, or -1 when it was already handled
+    public static long remainingMs(int threshold, long elapsedTodayMs, long limitMs,
+                                   boolean halfShown, boolean limitReached) {
+        long remaining;
+        if (threshold == THRESHOLD_HALF) {
+            if (halfShown) return -1;
+            remaining = limitMs / 2 - elapsedTodayMs;
+        } else {
+            if (limitReached) return -1;
+            remaining = limitMs - elapsedTodayMs;
+        }
+        return Math.max(0, remaining);
+    }
+}
@@ -0,0 +1,265 @@
+package com.detoxie;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.DisplayMetrics;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.View;
+
+// The overlay as one custom-drawn view, for low-RAM devices and devices that
+// were measured to render the regular view tree too slowly. Title, remaining
+// time, image, todos and close button are painted directly: the paints are
+// allocated once, text is laid out into StaticLayouts only when the config or
+// the width changes, and the image is expected to be a hardware bitmap, so it
+// lives in GPU memory instead of the Java heap. Same look as the view tree;
+// content that doesn't fit shrinks the image first, then clips the todos.
+// UI thread only.
+public class LiteOverlayView extends View {
+    private static final String TODOS_TITLE = "Your Pending work";
+    private static final int IMAGE_MAX_HEIGHT_DP = 380;
+    private static final int IMAGE_MIN_HEIGHT_DP = 48;
+
+    private final Runnable onClose;
+    private final DisplayMetrics metrics;
+
+    private final Paint cardPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint buttonPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint imagePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final TextPaint titlePaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final TextPaint remainingPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final TextPaint todoPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final TextPaint headingPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final TextPaint buttonTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+
+    private final RectF cardRect = new RectF();
+    private final RectF imageRect = new RectF();
+    private final RectF buttonRect = new RectF();
+
+    private OverlayConfig config;
+    private Bitmap image;
+    private char[] countdownText; // owned by OverlayCountdown, rewritten in place each tick
+    private int countdownLength;
+    private boolean allowClose;
+    private boolean hardwareImage;
+
+    // Laid out for laidOutVersion at laidOutWidth x laidOutHeight, with or without the button
+    private int laidOutVersion = -1;
+    private boolean laidOutAllowClose;
+    private int laidOutWidth;
+    private int laidOutHeight;
+    private StaticLayout titleLayout;
+    private StaticLayout todosHeadingLayout;
+    private StaticLayout todosLayout;
+    private float titleY;
+    private float remainingBaseline;
+    private float todosY;
+    private float todosClipBottom;
+    private float buttonTextBaseline;
+
+    public LiteOverlayView(Context context, Runnable onClose) {
+        super(context);
+        this.onClose = onClose;
+        this.metrics = context.getResources().getDisplayMetrics();
+
+        buttonPaint.setColor(Color.BLACK);
+        titlePaint.setColor(Color.WHITE);
+        titlePaint.setTextSize(sp(22));
+        titlePaint.setTypeface(Typeface.DEFAULT_BOLD);
+        remainingPaint.setColor(Color.WHITE);
+        remainingPaint.setTextSize(sp(14));
+        remainingPaint.setTextAlign(Paint.Align.CENTER);
+        remainingPaint.setFontFeatureSettings("tnum");
+        todoPaint.setColor(Color.WHITE);
+        todoPaint.setTextSize(sp(14));
+        headingPaint.setColor(Color.WHITE);
+        headingPaint.setTextSize(sp(16));
+        headingPaint.setTypeface(Typeface.DEFAULT_BOLD);
+        buttonTextPaint.setColor(Color.WHITE);
+        buttonTextPaint.setTextSize(sp(16));
+        buttonTextPaint.setTypeface(Typeface.DEFAULT_BOLD);
+        buttonTextPaint.setTextAlign(Paint.Align.CENTER);
+    }
+
+    // Binds a config and image for the next show; text is re-laid out only if the config changed
+    public void bind(OverlayConfig config, Bitmap image, boolean hardwareImage, boolean allowClose) {
+        if (this.config != config || this.image != image) {
+            this.config = config;
+            this.image = image;
+            this.hardwareImage = hardwareImage;
+            cardPaint.setColor(config.backgroundColor);
+            laidOutVersion = -1;
+        }
+        this.allowClose = allowClose;
+        countdownLength = 0;
+        invalidate();
+    }
+
+    // The laid-out blocks are kept; the next draw only replays them around the new text
+    public void setCountdown(char[] text, int length) {
+        countdownText = text;
+        countdownLength = length;
+        invalidate();
+    }
+
+    // Drops the image reference; the view must not be attached
+    public void release() {
+        image = null;
+        config = null;
+        countdownText = null;
+        countdownLength = 0;
+        laidOutVersion = -1;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (config == null) return;
+        int width = getWidth();
+        int height = getHeight();
+        if (laidOutVersion != config.version || laidOutWidth != width || laidOutHeight != height
+                || laidOutAllowClose != allowClose) {
+            layoutContent(width, height);
+        }
+
+        float radius = dp(16);
+        canvas.drawRoundRect(cardRect, radius, radius, cardPaint);
+
+        canvas.save();
+        canvas.translate(dp(24), titleY);
+        titleLayout.draw(canvas);
+        canvas.restore();
+
+        if (countdownLength > 0) {
+            canvas.drawText(countdownText, 0, countdownLength, width / 2f, remainingBaseline, remainingPaint);
+        }
+
+        // A hardware bitmap can only be drawn by the hardware renderer
+        if (image != null && imageRect.height() > 0 && (!hardwareImage || canvas.isHardwareAccelerated())) {
+            canvas.drawBitmap(image, null, imageRect, imagePaint);
+        }
+
+        if (todosLayout != null && todosClipBottom > todosY) {
+            canvas.save();
+            canvas.clipRect(0, todosY, width, todosClipBottom);
+            canvas.translate(dp(24), todosY);
+            todosHeadingLayout.draw(canvas);
+            canvas.translate(0, todosHeadingLayout.getHeight() + dp(8));
+            todosLayout.draw(canvas);
+            canvas.restore();
+        }
+
+        if (allowClose) {
+            canvas.drawRoundRect(buttonRect, radius, radius, buttonPaint);
+            canvas.drawText(config.buttonText, buttonRect.centerX(), buttonTextBaseline, buttonTextPaint);
+        }
+    }
+
+    // Stacks the blocks top to bottom, centred vertically like the view tree's gravity
+    private void layoutContent(int width, int height) {
+        laidOutVersion = config.version;
+        laidOutWidth = width;
+        laidOutHeight = height;
+        laidOutAllowClose = allowClose;
+        cardRect.set(0, 0, width, height);
+
+        int paddingH = dp(24);
+        int paddingV = dp(32);
+        int contentWidth = Math.max(1, width - 2 * paddingH);
+
+        titleLayout = layout(config.title, titlePaint, contentWidth, Layout.Alignment.ALIGN_CENTER);
+        float bodyLine = remainingPaint.descent() - remainingPaint.ascent();
+
+        float todosHeight = 0;
+        todosHeadingLayout = null;
+        todosLayout = null;
+        if (config.getTodoCount() > 0) {
+            StringBuilder todos = new StringBuilder();
+            for (int i = 0; i < config.getTodoCount(); i++) {
+                if (i > 0) todos.append('\n');
+                todos.append("* ").append(config.getTodo(i));
+            }
+            todosHeadingLayout = layout(TODOS_TITLE, headingPaint, contentWidth, Layout.Alignment.ALIGN_CENTER);
+            todosLayout = layout(todos, todoPaint, contentWidth, Layout.Alignment.ALIGN_NORMAL);
+            todosHeight = todosHeadingLayout.getHeight() + dp(8) + todosLayout.getHeight() + dp(20);
+        }
+
+        float buttonTextLine = buttonTextPaint.descent() - buttonTextPaint.ascent();
+        float buttonHeight = allowClose ? buttonTextLine + dp(24) : 0;
+        float fixedHeight = titleLayout.getHeight() + dp(12) + bodyLine + dp(24) + todosHeight + buttonHeight;
+
+        // The image takes whatever is left, up to its usual maximum
+        float imageHeight = 0;
+        float imageWidth = 0;
+        if (image != null && image.getWidth() > 0 && image.getHeight() > 0) {
+            float available = Math.min(dp(IMAGE_MAX_HEIGHT_DP), height - 2 * paddingV - fixedHeight - dp(24));
+            if (available >= dp(IMAGE_MIN_HEIGHT_DP)) {
+                float scale = Math.min((float) contentWidth / image.getWidth(), available / image.getHeight());
+                imageWidth = image.getWidth() * scale;
+                imageHeight = image.getHeight() * scale;
+            }
+        }
+
+        float total = fixedHeight + (imageHeight > 0 ? imageHeight + dp(24) : 0);
+        float y = Math.max(paddingV, (height - total) / 2f);
+
+        titleY = y;
+        y += titleLayout.getHeight() + dp(12);
+        remainingBaseline = y - remainingPaint.ascent();
+        y += bodyLine + dp(24);
+
+        if (imageHeight > 0) {
+            float left = (width - imageWidth) / 2f;
+            imageRect.set(left, y, left + imageWidth, y + imageHeight);
+            y += imageHeight + dp(24);
+        } else {
+            imageRect.set(0, 0, 0, 0);
+        }
+
+        // The button stays on screen; todos are clipped above it if they don't fit
+        float buttonTop = Math.min(y + todosHeight, height - paddingV - buttonHeight);
+        todosY = y;
+        todosClipBottom = buttonTop - (todosLayout != null ? dp(20) : 0);
+        buttonRect.set(paddingH + dp(24), buttonTop, width - paddingH - dp(24), buttonTop + buttonHeight);
+        buttonTextBaseline = buttonRect.centerY() - (buttonTextPaint.ascent() + buttonTextPaint.descent()) / 2f;
+    }
+
+    private static StaticLayout layout(CharSequence text, TextPaint paint, int width, Layout.Alignment alignment) {
+        return StaticLayout.Builder.obtain(text, 0, text.length(), paint, width)
+            .setAlignment(alignment)
+            .setIncludePad(false)
+            .build();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (!allowClose) return true; // swallow touches like the full overlay does
+        if (event.getActionMasked() == MotionEvent.ACTION_UP
+                && buttonRect.contains(event.getX(), event.getY())) {
+            performClick();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean performClick() {
+        super.performClick();
+        onClose.run();
+        return true;
+    }
+
+    private int dp(int value) {
+        return Math.round(value * metrics.density);
+    }
+
+    private float sp(float value) {
+        return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, value, metrics);
+    }
+}
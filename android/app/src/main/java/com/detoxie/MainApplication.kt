@@ -12,7 +12,19 @@ import com.facebook.react.defaults.DefaultReactNativeHost
 
 class MainApplication : Application(), ReactApplication {
 
-  override val reactNativeHost: ReactNativeHost =
+  // The accessibility service can start this process with no UI at all, so
+  // React Native is only loaded once something actually asks for a host
+  private var reactNativeLoaded = false
+
+  private fun ensureReactNativeLoaded() {
+    if (!reactNativeLoaded) {
+      reactNativeLoaded = true
+      loadReactNative(this)
+    }
+  }
+
+  override val reactNativeHost: ReactNativeHost by lazy {
+      ensureReactNativeLoaded()
       object : DefaultReactNativeHost(this) {
         override fun getPackages(): List<ReactPackage> =
             PackageList(this).packages.apply {
@@ -28,12 +40,11 @@ class MainApplication : Application(), ReactApplication {
         override val isNewArchEnabled: Boolean = BuildConfig.IS_NEW_ARCHITECTURE_ENABLED
         override val isHermesEnabled: Boolean = BuildConfig.IS_HERMES_ENABLED
       }
+  }
 
   override val reactHost: ReactHost
-    get() = getDefaultReactHost(applicationContext, reactNativeHost)
-
-  override fun onCreate() {
-    super.onCreate()
-    loadReactNative(this)
-  }
+    get() {
+      ensureReactNativeLoaded()
+      return getDefaultReactHost(applicationContext, reactNativeHost)
+    }
 }
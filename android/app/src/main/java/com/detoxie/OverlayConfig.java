@@ -0,0 +1,154 @@
+package com.detoxie;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+// Immutable, pre-parsed overlay configuration. configureOverlay builds one from
+// the JS map and persists it in a small binary file so the service can enforce
+// the limit before React Native has started. The vision image is kept as a
+// separate file and only referenced here by path.
+public final class OverlayConfig {
+    static final String FILE_NAME = "overlay_config.bin";
+    static final String IMAGE_FILE_NAME = "overlay_vision.img";
+
+    private static final int MAGIC = 0x44544F43; // "DTOC"
+    private static final int FORMAT_VERSION = 1;
+
+    public static final int DEFAULT_BACKGROUND_COLOR = 0xFF5865F2; // Default blue
+    public static final String DEFAULT_TITLE = "Stop Doom Scrolling.\n Make time for what\ntruly matters.";
+    public static final String DEFAULT_BUTTON_TEXT = "Close";
+    public static final long DEFAULT_LIMIT_MS = 5 * 60L * 1000L; // default 5 minutes
+
+    public static final OverlayConfig DEFAULT = new OverlayConfig(0, 0, 0, DEFAULT_BACKGROUND_COLOR,
+        DEFAULT_TITLE, DEFAULT_BUTTON_TEXT, DEFAULT_LIMIT_MS, new String[0], null);
+
+    private static volatile OverlayConfig current = DEFAULT;
+
+    public final int version;
+    public final int imageVersion;
+    public final int imageHash;
+    public final int backgroundColor;
+    public final String title;
+    public final String buttonText;
+    public final long limitMs;
+    private final String[] todos;
+    public final String imagePath; // null when no vision image is configured
+
+    public OverlayConfig(int version, int imageVersion, int imageHash, int backgroundColor, String title,
+                         String buttonText, long limitMs, String[] todos, String imagePath) {
+        this.version = version;
+        this.imageVersion = imageVersion;
+        this.imageHash = imageHash;
+        this.backgroundColor = backgroundColor;
+        this.title = title;
+        this.buttonText = buttonText;
+        this.limitMs = limitMs;
+        this.todos = todos.clone();
+        this.imagePath = imagePath;
+    }
+
+    public static OverlayConfig get() {
+        return current;
+    }
+
+    public static void set(OverlayConfig config) {
+        current = config;
+    }
+
+    public int getTodoCount() {
+        return todos.length;
+    }
+
+    public String getTodo(int index) {
+        return todos[index];
+    }
+
+    public boolean hasImage() {
+        return imagePath != null;
+    }
+
+    // Loads the persisted snapshot into the shared slot; keeps defaults if absent or unreadable
+    public static OverlayConfig load(File dir) throws IOException {
+        File file = new File(dir, FILE_NAME);
+        if (!file.exists()) return current;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unrecognized overlay config file");
+            }
+            int version = in.readInt();
+            int imageVersion = in.readInt();
+            int imageHash = in.readInt();
+            int backgroundColor = in.readInt();
+            long limitMs = in.readLong();
+            String title = in.readUTF();
+            String buttonText = in.readUTF();
+            String[] todos = new String[in.readInt()];
+            for (int i = 0; i < todos.length; i++) {
+                todos[i] = in.readUTF();
+            }
+            String imagePath = in.readBoolean() ? in.readUTF() : null;
+            if (imagePath != null && !new File(imagePath).exists()) {
+                imagePath = null;
+            }
+
+            OverlayConfig config = new OverlayConfig(version, imageVersion, imageHash, backgroundColor,
+                title, buttonText, limitMs, todos, imagePath);
+            current = config;
+            return config;
+        }
+    }
+
+    // Written to a temp file and renamed so a crash never leaves a torn snapshot
+    public void save(File dir) throws IOException {
+        File tmp = new File(dir, FILE_NAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(version);
+            out.writeInt(imageVersion);
+            out.writeInt(imageHash);
+            out.writeInt(backgroundColor);
+            out.writeLong(limitMs);
+            out.writeUTF(title);
+            out.writeUTF(buttonText);
+            out.writeInt(todos.length);
+            for (String todo : todos) {
+                out.writeUTF(todo);
+            }
+            out.writeBoolean(imagePath != null);
+            if (imagePath != null) {
+                out.writeUTF(imagePath);
+            }
+        }
+        if (!tmp.renameTo(new File(dir, FILE_NAME))) {
+            throw new IOException("Failed to replace overlay config file");
+        }
+    }
+
+    // Stores decoded image bytes next to the config and returns the file path
+    static String saveImage(File dir, byte[] imageBytes) throws IOException {
+        File tmp = new File(dir, IMAGE_FILE_NAME + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(imageBytes);
+        }
+        File target = new File(dir, IMAGE_FILE_NAME);
+        if (!tmp.renameTo(target)) {
+            throw new IOException("Failed to replace overlay image file");
+        }
+        return target.getAbsolutePath();
+    }
+
+    static void deleteImage(File dir) {
+        File target = new File(dir, IMAGE_FILE_NAME);
+        if (target.exists() && !target.delete()) {
+            target.deleteOnExit();
+        }
+    }
+}
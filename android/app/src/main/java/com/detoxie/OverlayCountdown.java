@@ -0,0 +1,111 @@
+package com.detoxie;
+
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+// Live "time left" / "over limit" text for the overlay. Ticks on the
+// Choreographer, but only when the shown second changes: each tick posts the
+// next one delayed to that boundary, so at most one frame callback per second
+// runs and it lands in the frame the text is drawn in. The text is formatted
+// into one reusable char buffer and handed to the target, which only
+// invalidates its text. UI thread only.
+public class OverlayCountdown implements Choreographer.FrameCallback {
+    private static final String LEFT_SUFFIX = " left today";
+    private static final String OVER_PREFIX = "Over limit by ";
+
+    public interface Target {
+        // text is only valid until the next call; length chars from index 0
+        void setCountdown(char[] text, int length);
+    }
+
+    private final ServiceDiagnostics diagnostics = ServiceDiagnostics.get();
+    private final char[] text = new char[48];
+    private Target target;
+    private long limitMs;
+    private long usedMsAtStart;
+    private long startedAt; // SystemClock.elapsedRealtime(), same clock as the session
+    private boolean running = false;
+
+    // usedMs is today's total at startedAt; the session keeps counting behind the overlay
+    public void start(Target target, long limitMs, long usedMs, long startedAt) {
+        stop();
+        this.target = target;
+        this.limitMs = limitMs;
+        this.usedMsAtStart = usedMs;
+        this.startedAt = startedAt;
+        running = true;
+        // Bound right away, so the first frame of the overlay already has the text
+        tick();
+    }
+
+    public void stop() {
+        if (!running) return;
+        running = false;
+        target = null;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running) return;
+        long startNs = System.nanoTime();
+        tick();
+        diagnostics.recordNanos(ServiceDiagnostics.OVERLAY_TICK_NS, System.nanoTime() - startNs);
+    }
+
+    private void tick() {
+        long usedMs = usedMsAtStart + Math.max(0, SystemClock.elapsedRealtime() - startedAt);
+        target.setCountdown(text, format(limitMs, usedMs, text));
+        Choreographer.getInstance().postFrameCallbackDelayed(this, nextChangeMs(limitMs, usedMs));
+    }
+
+    // Remaining time is rounded up and over-limit time down, so the text reads
+    // 0:01 left, then Over limit by 0:00 exactly at the limit
+    static int format(long limitMs, long usedMs, char[] out) {
+        if (usedMs < limitMs) {
+            int length = writeClock(out, 0, (limitMs - usedMs + 999) / 1_000);
+            LEFT_SUFFIX.getChars(0, LEFT_SUFFIX.length(), out, length);
+            return length + LEFT_SUFFIX.length();
+        }
+        OVER_PREFIX.getChars(0, OVER_PREFIX.length(), out, 0);
+        return writeClock(out, OVER_PREFIX.length(), (usedMs - limitMs) / 1_000);
+    }
+
+    // Milliseconds until format() would produce a different text
+    static long nextChangeMs(long limitMs, long usedMs) {
+        if (usedMs < limitMs) {
+            long fraction = (limitMs - usedMs) % 1_000;
+            return fraction == 0 ? 1_000 : fraction;
+        }
+        return 1_000 - (usedMs - limitMs) % 1_000;
+    }
+
+    // M:SS, or H:MM:SS from an hour up
+    private static int writeClock(char[] out, int at, long seconds) {
+        long hours = seconds / 3_600;
+        long minutes = (seconds / 60) % 60;
+        if (hours > 0) {
+            at = writeNumber(out, at, hours);
+            out[at++] = ':';
+            out[at++] = (char) ('0' + minutes / 10);
+            out[at++] = (char) ('0' + minutes % 10);
+        } else {
+            at = writeNumber(out, at, minutes);
+        }
+        long secs = seconds % 60;
+        out[at++] = ':';
+        out[at++] = (char) ('0' + secs / 10);
+        out[at++] = (char) ('0' + secs % 10);
+        return at;
+    }
+
+    private static int writeNumber(char[] out, int at, long value) {
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) digits++;
+        for (int i = at + digits - 1; i >= at; i--) {
+            out[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return at + digits;
+    }
+}
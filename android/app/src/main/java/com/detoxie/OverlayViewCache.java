@@ -0,0 +1,318 @@
+package com.detoxie;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.graphics.drawable.GradientDrawable;
+import android.os.Build;
+import android.util.Log;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.ImageView;
+import android.widget.LinearLayout;
+import android.widget.ScrollView;
+import android.widget.TextView;
+
+// Holds the overlay view tree between shows. The tree is rebuilt only when the
+// OverlayConfig version changes; every show just re-binds the close button.
+// While shown, OverlayCountdown keeps the remaining time up to date. The
+// vision image is decoded once per image version, downsampled to the width it
+// is displayed at. UI thread only.
+//
+// In lite mode the tree is replaced by a single LiteOverlayView and the image
+// is decoded as a hardware bitmap. Lite mode is chosen up front for low-RAM
+// devices, or switched to once the full tree has missed the first-frame
+// budget on a few shows.
+public class OverlayViewCache implements OverlayCountdown.Target {
+    private static final String TAG = "OverlayViewCache";
+    private static final int IMAGE_MAX_HEIGHT_DP = 380;
+
+    // Attach to first drawn frame; beyond this the video visibly stutters behind the overlay
+    static final long FIRST_FRAME_BUDGET_NS = 120_000_000L;
+    static final int SLOW_SHOWS_BEFORE_LITE = 2;
+
+    private final Context context;
+    private final Runnable onClose;
+
+    private ScrollView rootView;
+    private TextView remainingText;
+    private Button closeButton;
+    private int builtConfigVersion = -1;
+
+    private Bitmap visionBitmap;
+    private int decodedImageVersion = -1;
+    private boolean decodedAsHardware;
+
+    private boolean lite;
+    private boolean switchToLite; // decided while attached, applied by the next obtain()
+    private LiteOverlayView liteView;
+    private int slowShows;
+
+    public OverlayViewCache(Context context, Runnable onClose, boolean lite) {
+        this.context = context;
+        this.onClose = onClose;
+        this.lite = lite;
+    }
+
+    public boolean isLite() {
+        return lite;
+    }
+
+    // Fed with the measured time to first frame of each show. Returns true when
+    // the full tree has been too slow often enough that lite mode takes over
+    // from the next show on.
+    public boolean onFirstFrame(boolean shownLite, long nanos) {
+        if (lite || switchToLite || shownLite || nanos <= FIRST_FRAME_BUDGET_NS) return false;
+        if (++slowShows < SLOW_SHOWS_BEFORE_LITE) return false;
+        Log.d(TAG, "Overlay first frame took " + (nanos / 1_000_000) + " ms, switching to lite overlay");
+        switchToLite = true;
+        return true;
+    }
+
+    // The returned view must be detached before the next call
+    public View obtain(OverlayConfig config, boolean allowClose) {
+        if (switchToLite) {
+            release();
+            lite = true;
+            switchToLite = false;
+        }
+        if (lite) {
+            return obtainLite(config, allowClose);
+        }
+        if (rootView == null || config.version != builtConfigVersion) {
+            if (config.imageVersion != decodedImageVersion) {
+                decodeVision(config);
+            }
+            build(config);
+            builtConfigVersion = config.version;
+        }
+        bind(allowClose);
+        return rootView;
+    }
+
+    private View obtainLite(OverlayConfig config, boolean allowClose) {
+        if (config.imageVersion != decodedImageVersion) {
+            decodeVision(config);
+        }
+        if (liteView == null) {
+            liteView = new LiteOverlayView(context, onClose);
+        }
+        liteView.bind(config, visionBitmap, decodedAsHardware, allowClose);
+        return liteView;
+    }
+
+    // Only the remaining-time text changes: the TextView has a fixed width and a
+    // single line, so the new text is re-measured in place and just redrawn
+    @Override
+    public void setCountdown(char[] text, int length) {
+        if (lite) {
+            if (liteView != null) liteView.setCountdown(text, length);
+        } else if (remainingText != null) {
+            remainingText.setText(text, 0, length);
+        }
+    }
+
+    // Drops the cached tree and bitmap; the overlay must not be attached
+    public void release() {
+        rootView = null;
+        remainingText = null;
+        closeButton = null;
+        builtConfigVersion = -1;
+        if (liteView != null) {
+            liteView.release();
+            liteView = null;
+        }
+        if (visionBitmap != null) {
+            visionBitmap.recycle();
+            visionBitmap = null;
+        }
+        decodedImageVersion = -1;
+    }
+
+    private void bind(boolean allowClose) {
+        closeButton.setVisibility(allowClose ? View.VISIBLE : View.GONE);
+        rootView.scrollTo(0, 0);
+    }
+
+    private void decodeVision(OverlayConfig config) {
+        Bitmap previous = visionBitmap;
+        visionBitmap = null;
+        decodedImageVersion = config.imageVersion;
+        decodedAsHardware = false;
+
+        if (config.hasImage()) {
+            try {
+                // Read the bounds first so we never allocate the full-size image
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inJustDecodeBounds = true;
+                BitmapFactory.decodeFile(config.imagePath, options);
+                options.inSampleSize = computeSampleSize(options.outWidth, options.outHeight,
+                    getImageTargetWidth(), dpToPx(IMAGE_MAX_HEIGHT_DP));
+                options.inJustDecodeBounds = false;
+                if (lite && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                    // Uploaded to the GPU once; no pixel copy stays on the Java heap
+                    options.inPreferredConfig = Bitmap.Config.HARDWARE;
+                    decodedAsHardware = true;
+                }
+                visionBitmap = BitmapFactory.decodeFile(config.imagePath, options);
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to decode vision image", e);
+            }
+        }
+
+        // Only called while detached, so the old bitmap is no longer drawn
+        if (previous != null) {
+            previous.recycle();
+        }
+    }
+
+    private int getImageTargetWidth() {
+        // Overlay spans the screen; the container has 24dp horizontal padding
+        return context.getResources().getDisplayMetrics().widthPixels - 2 * dpToPx(24);
+    }
+
+    static int computeSampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int sampleSize = 1;
+        if (width <= 0 || height <= 0 || targetWidth <= 0 || targetHeight <= 0) return sampleSize;
+        while (width / (sampleSize * 2) >= targetWidth && height / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private void build(OverlayConfig config) {
+        // Create scrollable container to ensure all content remains visible
+        ScrollView scrollView = new ScrollView(context);
+        scrollView.setFillViewport(true);
+
+        LinearLayout mainContainer = new LinearLayout(context);
+        mainContainer.setOrientation(LinearLayout.VERTICAL);
+        mainContainer.setGravity(Gravity.CENTER);
+        mainContainer.setPadding(dpToPx(24), dpToPx(32), dpToPx(24), dpToPx(32));
+
+        // Apply background configuration
+        GradientDrawable background = new GradientDrawable();
+        background.setColor(config.backgroundColor);
+        background.setCornerRadius(dpToPx(16));
+        mainContainer.setBackground(background);
+
+        // Title text
+        TextView titleText = new TextView(context);
+        titleText.setText(config.title);
+        titleText.setTextColor(Color.WHITE);
+        titleText.setTextSize(TypedValue.COMPLEX_UNIT_SP, 22);
+        titleText.setGravity(Gravity.CENTER);
+        titleText.setTypeface(null, android.graphics.Typeface.BOLD);
+
+        LinearLayout.LayoutParams titleParams = new LinearLayout.LayoutParams(
+            ViewGroup.LayoutParams.WRAP_CONTENT,
+            ViewGroup.LayoutParams.WRAP_CONTENT
+        );
+        titleParams.bottomMargin = dpToPx(12);
+        titleText.setLayoutParams(titleParams);
+        mainContainer.addView(titleText);
+
+        // Remaining time, ticking while shown. Full width and one line, so a new
+        // value never changes its size and never triggers a layout pass
+        remainingText = new TextView(context);
+        remainingText.setTextColor(Color.WHITE);
+        remainingText.setTextSize(TypedValue.COMPLEX_UNIT_SP, 14);
+        remainingText.setGravity(Gravity.CENTER);
+        remainingText.setSingleLine(true);
+        remainingText.setFontFeatureSettings("tnum"); // digits don't shift from one second to the next
+        LinearLayout.LayoutParams remainingParams = new LinearLayout.LayoutParams(
+            ViewGroup.LayoutParams.MATCH_PARENT,
+            ViewGroup.LayoutParams.WRAP_CONTENT
+        );
+        remainingParams.bottomMargin = dpToPx(24);
+        remainingText.setLayoutParams(remainingParams);
+        mainContainer.addView(remainingText);
+
+        // Optional vision image
+        if (visionBitmap != null) {
+            ImageView imageView = new ImageView(context);
+            imageView.setImageBitmap(visionBitmap);
+            imageView.setAdjustViewBounds(true);
+            imageView.setScaleType(ImageView.ScaleType.FIT_CENTER);
+            LinearLayout.LayoutParams imgParams = new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT
+            );
+            imgParams.bottomMargin = dpToPx(24);
+            imageView.setLayoutParams(imgParams);
+            imageView.setMaxHeight(dpToPx(IMAGE_MAX_HEIGHT_DP));
+            mainContainer.addView(imageView);
+        }
+
+        // Optional todos list
+        if (config.getTodoCount() > 0) {
+            LinearLayout listContainer = new LinearLayout(context);
+            listContainer.setOrientation(LinearLayout.VERTICAL);
+            listContainer.setGravity(Gravity.CENTER_HORIZONTAL);
+            LinearLayout.LayoutParams listParams = new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT
+            );
+            listParams.bottomMargin = dpToPx(20);
+            listContainer.setLayoutParams(listParams);
+
+            TextView listTitle = new TextView(context);
+            listTitle.setText("Your Pending work");
+            listTitle.setTextColor(Color.WHITE);
+            listTitle.setTextSize(TypedValue.COMPLEX_UNIT_SP, 16);
+            listTitle.setTypeface(null, android.graphics.Typeface.BOLD);
+            listTitle.setGravity(Gravity.CENTER);
+            LinearLayout.LayoutParams lt = new LinearLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+            lt.bottomMargin = dpToPx(8);
+            listTitle.setLayoutParams(lt);
+            listContainer.addView(listTitle);
+
+            for (int i = 0; i < config.getTodoCount(); i++) {
+                TextView tv = new TextView(context);
+                tv.setText("* " + config.getTodo(i));
+                tv.setTextColor(Color.WHITE);
+                tv.setTextSize(TypedValue.COMPLEX_UNIT_SP, 14);
+                tv.setGravity(Gravity.START);
+                LinearLayout.LayoutParams ip = new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+                ip.bottomMargin = dpToPx(4);
+                tv.setLayoutParams(ip);
+                listContainer.addView(tv);
+            }
+            mainContainer.addView(listContainer);
+        }
+
+        // Close button, hidden when the daily limit has been reached
+        closeButton = new Button(context);
+        closeButton.setText(config.buttonText);
+        closeButton.setTextColor(Color.WHITE);
+        closeButton.setTextSize(TypedValue.COMPLEX_UNIT_SP, 16);
+        closeButton.setTypeface(null, android.graphics.Typeface.BOLD);
+
+        GradientDrawable buttonBackground = new GradientDrawable();
+        buttonBackground.setColor(Color.BLACK);
+        buttonBackground.setCornerRadius(dpToPx(16));
+        closeButton.setBackground(buttonBackground);
+        closeButton.setPadding(0, dpToPx(12), 0, dpToPx(12));
+
+        LinearLayout.LayoutParams buttonParams = new LinearLayout.LayoutParams(
+            ViewGroup.LayoutParams.MATCH_PARENT,
+            ViewGroup.LayoutParams.WRAP_CONTENT
+        );
+        buttonParams.setMargins(dpToPx(24), 0, dpToPx(24), 0);
+        closeButton.setLayoutParams(buttonParams);
+        closeButton.setOnClickListener(v -> onClose.run());
+        mainContainer.addView(closeButton);
+
+        scrollView.addView(mainContainer, new ScrollView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        rootView = scrollView;
+    }
+
+    private int dpToPx(int dp) {
+        float density = context.getResources().getDisplayMetrics().density;
+        return Math.round(dp * density);
+    }
+}
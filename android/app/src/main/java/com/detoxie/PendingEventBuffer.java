@@ -0,0 +1,54 @@
+package com.detoxie;
+
+// Bounded holding area for events produced while JS is not listening.
+// Transitions are kept in order in a fixed-size ring that overwrites the
+// oldest entry. Written by the service worker, drained on the main thread
+// (ContentEventQueue's delivery) or the native modules thread (drainPendingEvents).
+public class PendingEventBuffer<T> {
+
+    public interface Sink<T> {
+        void onTransition(T event);
+    }
+
+    private final Object[] ring;
+    private int head; // index of the oldest transition
+    private int size;
+    private int overwritten;
+
+    public PendingEventBuffer(int capacity) {
+        this.ring = new Object[capacity];
+    }
+
+    public synchronized void append(T event) {
+        int tail = (head + size) % ring.length;
+        ring[tail] = event;
+        if (size < ring.length) {
+            size++;
+        } else {
+            head = (head + 1) % ring.length;
+            overwritten++;
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Number of transitions lost to overflow since the last drain
+    public synchronized int getOverwritten() {
+        return overwritten;
+    }
+
+    // Hands every transition to the sink, oldest first, and clears the buffer
+    @SuppressWarnings("unchecked")
+    public synchronized void drain(Sink<T> sink) {
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) % ring.length;
+            sink.onTransition((T) ring[index]);
+            ring[index] = null;
+        }
+        head = 0;
+        size = 0;
+        overwritten = 0;
+    }
+}
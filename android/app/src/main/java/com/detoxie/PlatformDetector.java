@@ -0,0 +1,22 @@
+package com.detoxie;
+
+// One tracked short-form section of one app. Adding a platform means adding
+// its entry to detection_rules.json: DetectionRules turns each entry into a
+// RuleBasedDetector and registers it in the DetectorRegistry, which
+// dispatches by package.
+public interface PlatformDetector {
+    // App package whose windows this detector classifies
+    String getPackageName();
+
+    // Identifier used in events, counters and the session log ("instagram", ...)
+    String getPlatform();
+
+    // User facing name of the section, used in status events ("Reels", ...)
+    String getSectionName();
+
+    // Anchor views that decide the section on their own, probed before any capture
+    ScreenClassifier.Anchor[] getAnchors();
+
+    // Called on the worker with the event's snapshot of the active window
+    ScreenClassifier.Result detect(TreeSnapshot tree);
+}
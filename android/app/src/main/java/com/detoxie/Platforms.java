@@ -0,0 +1,9 @@
+package com.detoxie;
+
+// Platform names shared by the counters, the session log and the JS side
+public final class Platforms {
+    public static final String INSTAGRAM = "instagram";
+    public static final String YOUTUBE = "youtube";
+
+    private Platforms() {}
+}
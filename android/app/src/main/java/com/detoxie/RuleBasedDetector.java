@@ -0,0 +1,45 @@
+package com.detoxie;
+
+// Detector for one platform entry of detection_rules.json: the entry's anchors
+// first, then its match clauses against the snapshot's keyword masks
+public class RuleBasedDetector implements PlatformDetector {
+    private final DetectionRules.PlatformRule rule;
+    private final ScreenClassifier classifier;
+
+    public RuleBasedDetector(DetectionRules.PlatformRule rule) {
+        this.rule = rule;
+        this.classifier = new ScreenClassifier(rule.anchors, this::matchesAnyClause);
+    }
+
+    @Override
+    public String getPackageName() {
+        return rule.packageName;
+    }
+
+    @Override
+    public String getPlatform() {
+        return rule.platform;
+    }
+
+    @Override
+    public String getSectionName() {
+        return rule.sectionName;
+    }
+
+    @Override
+    public ScreenClassifier.Anchor[] getAnchors() {
+        return classifier.getAnchors();
+    }
+
+    @Override
+    public ScreenClassifier.Result detect(TreeSnapshot tree) {
+        return classifier.classify(tree);
+    }
+
+    private boolean matchesAnyClause(TreeSnapshot tree, int index) {
+        for (DetectionRules.Clause clause : rule.clauses) {
+            if (clause.matches(tree, index)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,92 @@
+package com.detoxie;
+
+// Decides whether a window shows a tracked section (Reels, Shorts, ...).
+// Works on the event's TreeSnapshot: known anchor view IDs are checked first,
+// then every captured node is offered to the matcher in breadth-first order,
+// so the shallow chrome (tab bars, toolbars, player containers) is seen first.
+// AnchorProbe runs the same anchors against the live window before a capture.
+public class ScreenClassifier {
+
+    public interface NodeMatcher {
+        boolean matches(TreeSnapshot tree, int index);
+    }
+
+    public static final class Anchor {
+        final String viewId;
+        final boolean requireSelected;
+
+        public Anchor(String viewId, boolean requireSelected) {
+            this.viewId = viewId;
+            this.requireSelected = requireSelected;
+        }
+    }
+
+    public static final class Result {
+        public final boolean matched;
+        public final boolean matchedByAnchor;
+        public final int nodesVisited;
+        public final int depthReached;
+        public final boolean budgetExhausted;
+        // Snapshot index of the anchor that decided the result, -1 if none did
+        public final int anchorIndex;
+
+        Result(boolean matched, boolean matchedByAnchor, int anchorIndex, int nodesVisited, int depthReached,
+               boolean budgetExhausted) {
+            this.matched = matched;
+            this.matchedByAnchor = matchedByAnchor;
+            this.anchorIndex = anchorIndex;
+            this.nodesVisited = nodesVisited;
+            this.depthReached = depthReached;
+            this.budgetExhausted = budgetExhausted;
+        }
+    }
+
+    private static final Result NO_ROOT = new Result(false, false, -1, 0, 0, false);
+
+    private final Anchor[] anchors;
+    private final NodeMatcher matcher;
+
+    public ScreenClassifier(Anchor[] anchors, NodeMatcher matcher) {
+        this.anchors = anchors;
+        this.matcher = matcher;
+    }
+
+    public Anchor[] getAnchors() {
+        return anchors;
+    }
+
+    public Result classify(TreeSnapshot tree) {
+        if (!tree.hasRoot()) return NO_ROOT;
+
+        int size = tree.size();
+
+        // Fast path: anchor views identify the section without looking at text
+        int idleAnchor = -1;
+        for (Anchor anchor : anchors) {
+            int found = -1;
+            for (int i = 0; i < size; i++) {
+                if (!tree.viewIdEquals(i, anchor.viewId)) continue;
+                found = i;
+                if (!anchor.requireSelected || tree.isSelected(i)) {
+                    return new Result(true, true, i, i + 1, tree.getDepth(i), false);
+                }
+            }
+            if (found >= 0 && anchor.requireSelected && idleAnchor < 0) {
+                idleAnchor = found;
+            }
+        }
+
+        // The tab bar is on screen but another tab is selected, and no player
+        // anchor resolved: the section is definitely not active, skip the matcher.
+        if (idleAnchor >= 0) {
+            return new Result(false, true, idleAnchor, size, tree.getDepthReached(), false);
+        }
+
+        for (int i = 0; i < size; i++) {
+            if (matcher.matches(tree, i)) {
+                return new Result(true, false, -1, i + 1, tree.getDepth(i), false);
+            }
+        }
+        return new Result(false, false, -1, size, tree.getDepthReached(), tree.isTruncated());
+    }
+}
@@ -0,0 +1,82 @@
+package com.detoxie;
+
+import java.util.HashMap;
+
+// Last classification per window, keyed by window id and the class name of
+// the activity/fragment that window last reported. A result stays valid until
+// the window changes state, or a structural content change hits the matched
+// anchor or one of its ancestors, so scrolling inside Reels/Shorts reuses it
+// without touching the tree. Worker thread only.
+public class ScreenStateCache {
+    public static final int MISS = 0;
+    public static final int HIT_ACTIVE = 1;
+    public static final int HIT_INACTIVE = 2;
+
+    // Windows come and go; forget everything rather than track their lifetime
+    private static final int MAX_WINDOWS = 16;
+
+    private static final class Entry {
+        String className;       // as last reported by a window state change
+        String resultClassName; // className the cached result was computed under
+        String packageName;
+        boolean valid;
+        boolean active;
+        // View ids from the deciding anchor up to the root; null when the
+        // result came from the heuristics, so any structural change counts
+        String[] anchorPath;
+    }
+
+    private final HashMap<Integer, Entry> windows = new HashMap<>();
+
+    public void onWindowStateChanged(int windowId, String className) {
+        Entry entry = obtain(windowId);
+        entry.className = className;
+        entry.valid = false;
+    }
+
+    // sourceViewId is the changed node's view id, null if it has none or is unknown
+    public void onStructuralChange(int windowId, String sourceViewId) {
+        Entry entry = windows.get(windowId);
+        if (entry == null || !entry.valid) return;
+        if (sourceViewId == null || entry.anchorPath == null || contains(entry.anchorPath, sourceViewId)) {
+            entry.valid = false;
+        }
+    }
+
+    public int lookup(int windowId, String packageName) {
+        Entry entry = windows.get(windowId);
+        if (entry == null || !entry.valid || !packageName.equals(entry.packageName)
+                || !java.util.Objects.equals(entry.className, entry.resultClassName)) {
+            return MISS;
+        }
+        return entry.active ? HIT_ACTIVE : HIT_INACTIVE;
+    }
+
+    public void store(int windowId, String packageName, boolean active, String[] anchorPath) {
+        Entry entry = obtain(windowId);
+        entry.resultClassName = entry.className;
+        entry.packageName = packageName;
+        entry.active = active;
+        entry.anchorPath = anchorPath;
+        entry.valid = true;
+    }
+
+    private Entry obtain(int windowId) {
+        Entry entry = windows.get(windowId);
+        if (entry == null) {
+            if (windows.size() >= MAX_WINDOWS) {
+                windows.clear();
+            }
+            entry = new Entry();
+            windows.put(windowId, entry);
+        }
+        return entry;
+    }
+
+    private static boolean contains(String[] values, String value) {
+        for (String candidate : values) {
+            if (candidate.equals(value)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,229 @@
+package com.detoxie;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Process-wide hot-path counters and fixed-bucket histograms. Written from the
+// binder thread (event dispatch), the worker (classification) and the main
+// thread (overlay, bridge); every update is one or two atomic adds, never a
+// lock or an allocation. visit() reads each metric atomically, but not all of
+// them at one instant, which is fine for diagnostics.
+public final class ServiceDiagnostics {
+    // Counters
+    public static final int EVENTS_RECEIVED = 0;
+    public static final int EVENTS_HANDLED = 1;      // coalesced classification passes
+    public static final int CLASSIFICATIONS = 2;
+    public static final int CACHE_HITS = 3;
+    public static final int CACHE_MISSES = 4;
+    public static final int BUDGET_EXHAUSTED = 5;
+    public static final int BATCHES_SENT = 6;
+    public static final int BATCHES_DROPPED = 7;     // sendEventToReactNative failed
+    public static final int STATUSES_DROPPED = 8;    // overwritten before JS drained them
+    public static final int OVERLAYS_SHOWN = 9;
+    public static final int OVERLAY_FAILURES = 10;
+    public static final int LITE_OVERLAYS_SHOWN = 11;  // subset of OVERLAYS_SHOWN
+    private static final String[] COUNTER_NAMES = {
+        "eventsReceived", "eventsHandled", "classifications", "cacheHits", "cacheMisses",
+        "budgetExhausted", "batchesSent", "batchesDropped", "statusesDropped",
+        "overlaysShown", "overlayFailures", "liteOverlaysShown",
+    };
+
+    // Histograms
+    public static final int EVENT_DISPATCH_NS = 0;   // onAccessibilityEvent, binder thread
+    public static final int EVENT_HANDLING_NS = 1;   // processWindowState, worker
+    public static final int CLASSIFY_NS = 2;         // capture (if needed) plus detect
+    public static final int NODES_VISITED = 3;
+    public static final int OVERLAY_ATTACH_NS = 4;   // view inflate/bind plus addView, main thread
+    public static final int OVERLAY_FIRST_FRAME_NS = 5; // attach start to the first frame drawn
+    public static final int OVERLAY_TICK_NS = 6;     // one countdown update, main thread
+    private static final String[] HISTOGRAM_NAMES = {
+        "eventDispatchUs", "eventHandlingUs", "classifyUs", "nodesVisited", "overlayAttachUs",
+        "overlayFirstFrameUs", "overlayTickUs",
+    };
+
+    // Upper bounds (inclusive) of each bucket; one more bucket catches the rest
+    private static final long[] LATENCY_BOUNDS_US = {
+        50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000,
+    };
+    private static final long[] NODE_BOUNDS = {10, 25, 50, 100, 200, 400, 800, 1_600};
+
+    private static final ServiceDiagnostics INSTANCE = new ServiceDiagnostics();
+
+    public interface Sink {
+        void counter(String name, long value);
+
+        void rate(String name, long lastSecond, long peak);
+
+        // bounds[i] is the inclusive upper bound of counts[i]; counts has one extra overflow bucket
+        void histogram(String name, long[] bounds, long[] counts, long total, long sum, long max);
+    }
+
+    public static final class Histogram {
+        private final long[] bounds;
+        private final AtomicLongArray counts;
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        Histogram(long[] bounds) {
+            this.bounds = bounds;
+            this.counts = new AtomicLongArray(bounds.length + 1);
+        }
+
+        public void record(long value) {
+            int bucket = 0;
+            while (bucket < bounds.length && value > bounds[bucket]) bucket++;
+            counts.incrementAndGet(bucket);
+            sum.addAndGet(value);
+            long previous;
+            while (value > (previous = max.get())) {
+                if (max.compareAndSet(previous, value)) break;
+            }
+        }
+
+        void visit(String name, Sink sink) {
+            long[] snapshot = new long[counts.length()];
+            long total = 0;
+            for (int i = 0; i < snapshot.length; i++) {
+                snapshot[i] = counts.get(i);
+                total += snapshot[i];
+            }
+            sink.histogram(name, bounds, snapshot, total, sum.get(), max.get());
+        }
+    }
+
+    private final long createdAtMs = System.currentTimeMillis();
+    private final AtomicLongArray counters = new AtomicLongArray(COUNTER_NAMES.length);
+    private final Histogram[] histograms = {
+        new Histogram(LATENCY_BOUNDS_US),
+        new Histogram(LATENCY_BOUNDS_US),
+        new Histogram(LATENCY_BOUNDS_US),
+        new Histogram(NODE_BOUNDS),
+        new Histogram(LATENCY_BOUNDS_US),
+        new Histogram(LATENCY_BOUNDS_US),
+        new Histogram(LATENCY_BOUNDS_US),
+    };
+
+    // Events per wall-clock second
+    private final AtomicLong rateSecond = new AtomicLong();
+    private final AtomicLong rateCount = new AtomicLong();
+    private final AtomicLong lastSecondEvents = new AtomicLong();
+    private final AtomicLong peakSecondEvents = new AtomicLong();
+
+    private ServiceDiagnostics() {}
+
+    public static ServiceDiagnostics get() {
+        return INSTANCE;
+    }
+
+    public void increment(int counter) {
+        counters.incrementAndGet(counter);
+    }
+
+    public void add(int counter, long delta) {
+        if (delta != 0) counters.addAndGet(counter, delta);
+    }
+
+    public void record(int histogram, long value) {
+        histograms[histogram].record(value);
+    }
+
+    // Latency histograms are kept in microseconds
+    public void recordNanos(int histogram, long nanos) {
+        histograms[histogram].record(nanos / 1_000);
+    }
+
+    // Counts one received accessibility event towards the per-second rate
+    public void onEvent(long nowMs) {
+        counters.incrementAndGet(EVENTS_RECEIVED);
+        long second = nowMs / 1_000;
+        long current = rateSecond.get();
+        if (second != current && rateSecond.compareAndSet(current, second)) {
+            // First event of a new second closes the previous one
+            long count = rateCount.getAndSet(0);
+            lastSecondEvents.set(second == current + 1 ? count : 0);
+            long peak;
+            while (count > (peak = peakSecondEvents.get())) {
+                if (peakSecondEvents.compareAndSet(peak, count)) break;
+            }
+        }
+        rateCount.incrementAndGet();
+    }
+
+    public void visit(Sink sink) {
+        sink.counter("uptimeMs", System.currentTimeMillis() - createdAtMs);
+        for (int i = 0; i < COUNTER_NAMES.length; i++) {
+            sink.counter(COUNTER_NAMES[i], counters.get(i));
+        }
+        sink.rate("eventsPerSecond", lastSecondEvents.get(), peakSecondEvents.get());
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i].visit(HISTOGRAM_NAMES[i], sink);
+        }
+    }
+
+    // One self-contained JSON object, used for the periodic dump file
+    public JSONObject toJson(long nowMs) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("timestamp", nowMs);
+        JSONException[] failure = {null};
+        visit(new Sink() {
+            @Override
+            public void counter(String name, long value) {
+                put(name, value);
+            }
+
+            @Override
+            public void rate(String name, long lastSecond, long peak) {
+                try {
+                    put(name, new JSONObject().put("lastSecond", lastSecond).put("peak", peak));
+                } catch (JSONException e) {
+                    failure[0] = e;
+                }
+            }
+
+            @Override
+            public void histogram(String name, long[] bounds, long[] counts, long total, long sum, long max) {
+                try {
+                    JSONObject histogram = new JSONObject()
+                        .put("count", total)
+                        .put("sum", sum)
+                        .put("max", max)
+                        .put("p50", percentile(bounds, counts, total, max, 0.50))
+                        .put("p99", percentile(bounds, counts, total, max, 0.99));
+                    JSONArray bucketBounds = new JSONArray();
+                    JSONArray bucketCounts = new JSONArray();
+                    for (long bound : bounds) bucketBounds.put(bound);
+                    for (long count : counts) bucketCounts.put(count);
+                    put(name, histogram.put("bounds", bucketBounds).put("counts", bucketCounts));
+                } catch (JSONException e) {
+                    failure[0] = e;
+                }
+            }
+
+            private void put(String name, Object value) {
+                try {
+                    json.put(name, value);
+                } catch (JSONException e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+        return json;
+    }
+
+    // Upper bound of the bucket holding the given quantile; the overflow bucket reports max
+    public static long percentile(long[] bounds, long[] counts, long total, long max, double quantile) {
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return i < bounds.length ? Math.min(bounds[i], max) : max;
+        }
+        return max;
+    }
+}
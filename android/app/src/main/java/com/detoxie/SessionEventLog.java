@@ -0,0 +1,191 @@
+package com.detoxie;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+// Append-only log of session transitions, stored as fixed-width records in
+// memory-mapped segment files. Appending is a handful of stores into the
+// mapping; the kernel writes pages back even if our process is killed.
+// One writer (the service worker thread); readers open the files read-only.
+public class SessionEventLog {
+    public static final byte TYPE_ENTER = 1;
+    public static final byte TYPE_EXIT = 2;
+    public static final byte TYPE_OVERLAY_SHOWN = 3;
+    public static final byte TYPE_OVERLAY_DISMISSED = 4;
+
+    public static final byte PLATFORM_UNKNOWN = 0;
+    public static final byte PLATFORM_INSTAGRAM = 1;
+    public static final byte PLATFORM_YOUTUBE = 2;
+
+    static final String DIR_NAME = "session_log";
+    private static final String SEGMENT_PREFIX = "segment_";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final int MAGIC = 0x44545345; // "DTSE"
+    private static final int FORMAT_VERSION = 1;
+    // magic, format version, committed record count, reserved
+    private static final int HEADER_SIZE = 16;
+    private static final int COUNT_OFFSET = 8;
+    // timestamp, duration, elapsed today, type, platform, reserved
+    static final int RECORD_SIZE = 32;
+
+    private final File dir;
+    private final int recordsPerSegment;
+    private final int maxSegments;
+
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private long segmentIndex = -1;
+    private int segmentCount;
+
+    public interface Visitor {
+        // Return false to stop reading
+        boolean onRecord(long timestampMs, byte type, byte platform, long durationMs, long elapsedTodayMs);
+    }
+
+    public SessionEventLog(File baseDir, int recordsPerSegment, int maxSegments) {
+        this.dir = new File(baseDir, DIR_NAME);
+        this.recordsPerSegment = recordsPerSegment;
+        this.maxSegments = maxSegments;
+    }
+
+    public static byte platformCode(String platform) {
+        if (Platforms.INSTAGRAM.equals(platform)) return PLATFORM_INSTAGRAM;
+        if (Platforms.YOUTUBE.equals(platform)) return PLATFORM_YOUTUBE;
+        return PLATFORM_UNKNOWN;
+    }
+
+    public static String platformName(byte code) {
+        switch (code) {
+            case PLATFORM_INSTAGRAM: return Platforms.INSTAGRAM;
+            case PLATFORM_YOUTUBE: return Platforms.YOUTUBE;
+            default: return null;
+        }
+    }
+
+    public static String typeName(byte type) {
+        switch (type) {
+            case TYPE_ENTER: return "enter";
+            case TYPE_EXIT: return "exit";
+            case TYPE_OVERLAY_SHOWN: return "overlay_shown";
+            case TYPE_OVERLAY_DISMISSED: return "overlay_dismissed";
+            default: return "unknown";
+        }
+    }
+
+    public void append(long timestampMs, byte type, byte platform, long durationMs, long elapsedTodayMs) throws IOException {
+        if (mapped == null || segmentCount >= recordsPerSegment) {
+            openNextSegment();
+        }
+        int offset = HEADER_SIZE + segmentCount * RECORD_SIZE;
+        mapped.putLong(offset, timestampMs);
+        mapped.putLong(offset + 8, durationMs);
+        mapped.putLong(offset + 16, elapsedTodayMs);
+        mapped.put(offset + 24, type);
+        mapped.put(offset + 25, platform);
+        // Publishing the new count is what commits the record
+        segmentCount++;
+        mapped.putInt(COUNT_OFFSET, segmentCount);
+    }
+
+    public void close() {
+        mapped = null;
+        if (channel != null) {
+            try { channel.close(); } catch (IOException ignored) {}
+            channel = null;
+        }
+    }
+
+    private void openNextSegment() throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        long[] existing = listSegments(dir);
+
+        if (segmentIndex < 0 && existing.length > 0) {
+            // First open after start: continue the newest segment if it has room
+            long last = existing[existing.length - 1];
+            map(last);
+            segmentCount = Math.min(mapped.getInt(COUNT_OFFSET), recordsPerSegment);
+            if (mapped.getInt(0) == MAGIC && segmentCount < recordsPerSegment) {
+                return;
+            }
+        }
+
+        long next = existing.length > 0 ? existing[existing.length - 1] + 1 : 0;
+        map(next);
+        mapped.putInt(0, MAGIC);
+        mapped.putInt(4, FORMAT_VERSION);
+        mapped.putInt(COUNT_OFFSET, 0);
+        segmentCount = 0;
+
+        // Rotate: keep only the newest maxSegments files
+        int excess = existing.length + 1 - maxSegments;
+        for (int i = 0; i < excess; i++) {
+            File old = segmentFile(dir, existing[i]);
+            if (!old.delete()) {
+                old.deleteOnExit();
+            }
+        }
+    }
+
+    private void map(long index) throws IOException {
+        close();
+        segmentIndex = index;
+        RandomAccessFile file = new RandomAccessFile(segmentFile(dir, index), "rw");
+        channel = file.getChannel();
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) recordsPerSegment * RECORD_SIZE);
+    }
+
+    // Walks committed records oldest first, starting at sinceMs (inclusive)
+    public static void read(File baseDir, long sinceMs, Visitor visitor) throws IOException {
+        File dir = new File(baseDir, DIR_NAME);
+        if (!dir.exists()) return;
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        for (long index : listSegments(dir)) {
+            try (RandomAccessFile file = new RandomAccessFile(segmentFile(dir, index), "r");
+                 FileChannel channel = file.getChannel()) {
+                header.clear();
+                if (channel.read(header, 0) < HEADER_SIZE || header.getInt(0) != MAGIC) continue;
+                int count = header.getInt(COUNT_OFFSET);
+
+                for (int i = 0; i < count; i++) {
+                    record.clear();
+                    if (channel.read(record, HEADER_SIZE + (long) i * RECORD_SIZE) < RECORD_SIZE) break;
+                    long timestamp = record.getLong(0);
+                    if (timestamp < sinceMs) continue;
+                    if (!visitor.onRecord(timestamp, record.get(24), record.get(25), record.getLong(8), record.getLong(16))) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private static long[] listSegments(File dir) {
+        String[] names = dir.list();
+        if (names == null) return new long[0];
+        long[] indexes = new long[names.length];
+        int n = 0;
+        for (String name : names) {
+            if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) continue;
+            try {
+                indexes[n++] = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            } catch (NumberFormatException ignored) {}
+        }
+        long[] result = Arrays.copyOf(indexes, n);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static File segmentFile(File dir, long index) {
+        return new File(dir, SEGMENT_PREFIX + index + SEGMENT_SUFFIX);
+    }
+}
@@ -0,0 +1,210 @@
+package com.detoxie;
+
+// Content session state for the service, as a table of
+// (state, input) -> (next state, effects). Inputs are what the worker learned
+// from one coalesced event, a timer or the overlay; effects are the side
+// effects the service runs for that transition, and nothing else. A
+// (state, input) pair missing from the table changes nothing, so repeated
+// events in a steady state cost no persistence and no emits.
+//
+// Transient windows (system UI, the keyboard, our own app) don't end a
+// session right away: it moves to GRACE, and only ends if nothing from the
+// content shows up again within the grace window. A session that ends from
+// GRACE ends when the grace began. Pure Java, so it runs in JVM tests; not
+// thread-safe, owned by the service worker thread.
+public final class SessionStateMachine {
+    public enum State {
+        IDLE,     // not in content
+        CONTENT,  // in content, time counting
+        GRACE,    // in content, a transient window is in front
+        OVERLAY,  // in content, limit overlay showing
+    }
+
+    public enum Input {
+        CONTENT_SEEN,       // monitored section active, same platform (or none yet)
+        PLATFORM_SWITCHED,  // monitored section active on another platform
+        SECTION_LEFT,       // current platform's app, outside the section
+        APP_LEFT,           // any other non-transient app
+        TRANSIENT_SEEN,
+        GRACE_EXPIRED,
+        OVERLAY_SHOWN,
+        OVERLAY_DISMISSED,  // closed by the user, section still active
+        OVERLAY_REMOVED,    // taken down without the user (attach failure, interrupt)
+    }
+
+    // Effects, run in this bit order
+    static final int CANCEL_GRACE = 1;
+    static final int REMOVE_OVERLAY = 1 << 1;
+    static final int EXIT = 1 << 2;
+    static final int ENTER = 1 << 3;
+    static final int RESUME = 1 << 4;
+    static final int ARM_GRACE = 1 << 5;
+    static final int ENFORCE = 1 << 6;
+
+    public interface Effects {
+        void enterSession(String platform, long now);
+
+        // endTime <= now; earlier when the session ended as a grace window began
+        void exitSession(String platform, long endTime, Input cause);
+
+        // Overlay closed, the same session keeps counting
+        void resumeSession(String platform, long now);
+
+        void enforceLimits(long now);
+
+        void removeOverlay();
+
+        void armGrace(long delayMs);
+
+        void cancelGrace();
+    }
+
+    private static final int STATES = State.values().length;
+    private static final int INPUTS = Input.values().length;
+    private static final State[] NEXT = new State[STATES * INPUTS];
+    private static final int[] EFFECTS = new int[STATES * INPUTS];
+
+    static {
+        for (State state : State.values()) {
+            for (Input input : Input.values()) {
+                NEXT[state.ordinal() * INPUTS + input.ordinal()] = state;
+            }
+        }
+
+        on(State.IDLE, Input.CONTENT_SEEN, State.CONTENT, ENTER | ENFORCE);
+        on(State.IDLE, Input.PLATFORM_SWITCHED, State.CONTENT, ENTER | ENFORCE);
+
+        on(State.CONTENT, Input.CONTENT_SEEN, State.CONTENT, ENFORCE);
+        on(State.CONTENT, Input.PLATFORM_SWITCHED, State.CONTENT, EXIT | ENTER | ENFORCE);
+        on(State.CONTENT, Input.SECTION_LEFT, State.IDLE, EXIT);
+        on(State.CONTENT, Input.APP_LEFT, State.IDLE, EXIT);
+        on(State.CONTENT, Input.TRANSIENT_SEEN, State.GRACE, ARM_GRACE);
+        on(State.CONTENT, Input.OVERLAY_SHOWN, State.OVERLAY, 0);
+
+        // Further transient events keep the original deadline
+        on(State.GRACE, Input.CONTENT_SEEN, State.CONTENT, CANCEL_GRACE | ENFORCE);
+        on(State.GRACE, Input.PLATFORM_SWITCHED, State.CONTENT, CANCEL_GRACE | EXIT | ENTER | ENFORCE);
+        on(State.GRACE, Input.SECTION_LEFT, State.IDLE, CANCEL_GRACE | EXIT);
+        on(State.GRACE, Input.APP_LEFT, State.IDLE, CANCEL_GRACE | EXIT);
+        on(State.GRACE, Input.GRACE_EXPIRED, State.IDLE, EXIT);
+        on(State.GRACE, Input.OVERLAY_SHOWN, State.OVERLAY, CANCEL_GRACE);
+
+        // The overlay is only ever shown in content; it goes with the session
+        on(State.OVERLAY, Input.PLATFORM_SWITCHED, State.CONTENT, REMOVE_OVERLAY | EXIT | ENTER | ENFORCE);
+        on(State.OVERLAY, Input.SECTION_LEFT, State.IDLE, REMOVE_OVERLAY | EXIT);
+        on(State.OVERLAY, Input.APP_LEFT, State.IDLE, REMOVE_OVERLAY | EXIT);
+        // A limit may have been crossed while the overlay was up; check it right away
+        on(State.OVERLAY, Input.OVERLAY_DISMISSED, State.CONTENT, RESUME | ENFORCE);
+        on(State.OVERLAY, Input.OVERLAY_REMOVED, State.CONTENT, REMOVE_OVERLAY);
+    }
+
+    private static void on(State state, Input input, State next, int effects) {
+        NEXT[state.ordinal() * INPUTS + input.ordinal()] = next;
+        EFFECTS[state.ordinal() * INPUTS + input.ordinal()] = effects;
+    }
+
+    // Table lookups, for tests
+    static State next(State state, Input input) {
+        return NEXT[state.ordinal() * INPUTS + input.ordinal()];
+    }
+
+    static int effects(State state, Input input) {
+        return EFFECTS[state.ordinal() * INPUTS + input.ordinal()];
+    }
+
+    private final Effects effects;
+    private long graceWindowMs;
+    private State state = State.IDLE;
+    private String platform;        // null in IDLE
+    private long graceStartedAt;
+
+    public SessionStateMachine(Effects effects, long graceWindowMs) {
+        this.effects = effects;
+        this.graceWindowMs = graceWindowMs;
+    }
+
+    public void setGraceWindowMs(long graceWindowMs) {
+        this.graceWindowMs = graceWindowMs;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public String getPlatform() {
+        return platform;
+    }
+
+    public boolean isInContent() {
+        return state != State.IDLE;
+    }
+
+    public boolean isOverlayShowing() {
+        return state == State.OVERLAY;
+    }
+
+    public void onContent(String contentPlatform, long now) {
+        boolean switched = platform != null && !platform.equals(contentPlatform);
+        dispatch(switched ? Input.PLATFORM_SWITCHED : Input.CONTENT_SEEN, contentPlatform, now);
+    }
+
+    // A monitored app outside its section; another platform's app counts as leaving
+    public void onSectionLeft(String appPlatform, long now) {
+        boolean same = platform != null && platform.equals(appPlatform);
+        dispatch(same ? Input.SECTION_LEFT : Input.APP_LEFT, null, now);
+    }
+
+    public void onOtherApp(long now) {
+        dispatch(Input.APP_LEFT, null, now);
+    }
+
+    public void onTransientApp(long now) {
+        dispatch(Input.TRANSIENT_SEEN, null, now);
+    }
+
+    public void onGraceExpired(long now) {
+        dispatch(Input.GRACE_EXPIRED, null, now);
+    }
+
+    public void onOverlayShown(long now) {
+        dispatch(Input.OVERLAY_SHOWN, null, now);
+    }
+
+    public void onOverlayDismissed(long now) {
+        dispatch(Input.OVERLAY_DISMISSED, null, now);
+    }
+
+    public void onOverlayRemoved(long now) {
+        dispatch(Input.OVERLAY_REMOVED, null, now);
+    }
+
+    // State is updated before any effect runs, so effects (enforceLimits showing
+    // the overlay, say) can feed further inputs
+    private void dispatch(Input input, String inputPlatform, long now) {
+        State from = state;
+        int index = from.ordinal() * INPUTS + input.ordinal();
+        int run = EFFECTS[index];
+        State to = NEXT[index];
+        if (run == 0 && to == from) return;
+
+        String previousPlatform = platform;
+        long exitAt = from == State.GRACE ? graceStartedAt : now;
+        state = to;
+        if (to == State.IDLE) {
+            platform = null;
+        } else if ((run & ENTER) != 0) {
+            platform = inputPlatform;
+        }
+        if (to == State.GRACE && from != State.GRACE) {
+            graceStartedAt = now;
+        }
+
+        if ((run & CANCEL_GRACE) != 0) effects.cancelGrace();
+        if ((run & REMOVE_OVERLAY) != 0) effects.removeOverlay();
+        if ((run & EXIT) != 0) effects.exitSession(previousPlatform, exitAt, input);
+        if ((run & ENTER) != 0) effects.enterSession(platform, now);
+        if ((run & RESUME) != 0) effects.resumeSession(platform, now);
+        if ((run & ARM_GRACE) != 0) effects.armGrace(graceWindowMs);
+        if ((run & ENFORCE) != 0) effects.enforceLimits(now);
+    }
+}
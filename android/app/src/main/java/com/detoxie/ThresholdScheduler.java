@@ -0,0 +1,50 @@
+package com.detoxie;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+// Arms one alarm per daily threshold (half limit, full limit) at the moment it
+// will be crossed, so overlays fire on time even when the user is passively
+// watching and no accessibility events arrive.
+public class ThresholdScheduler {
+    public static final int THRESHOLD_HALF = LimitPolicy.THRESHOLD_HALF;
+    public static final int THRESHOLD_FULL = LimitPolicy.THRESHOLD_FULL;
+
+    public interface Listener {
+        void onThresholdCrossed(int threshold);
+    }
+
+    private final Handler handler;
+    private final Runnable halfAlarm;
+    private final Runnable fullAlarm;
+
+    public ThresholdScheduler(Handler handler, Listener listener) {
+        this.handler = handler;
+        this.halfAlarm = () -> listener.onThresholdCrossed(THRESHOLD_HALF);
+        this.fullAlarm = () -> listener.onThresholdCrossed(THRESHOLD_FULL);
+    }
+
+    // Re-arms both alarms from the usage already counted today. A threshold
+    // that is already crossed but not yet handled (the full limit passing while
+    // the half overlay was up, say) fires right away instead of being dropped.
+    public void arm(long elapsedTodayMs, long limitMs, boolean halfShown, boolean limitReached) {
+        cancel();
+        long uptime = SystemClock.uptimeMillis();
+
+        long halfRemaining = LimitPolicy.remainingMs(THRESHOLD_HALF, elapsedTodayMs, limitMs, halfShown, limitReached);
+        if (halfRemaining >= 0) {
+            handler.postAtTime(halfAlarm, uptime + halfRemaining);
+        }
+
+        long fullRemaining = LimitPolicy.remainingMs(THRESHOLD_FULL, elapsedTodayMs, limitMs, halfShown, limitReached);
+        // When both are due, the immediate half check already enforces the full limit
+        if (fullRemaining > 0 || (fullRemaining == 0 && halfRemaining != 0)) {
+            handler.postAtTime(fullAlarm, uptime + fullRemaining);
+        }
+    }
+
+    public void cancel() {
+        handler.removeCallbacks(halfAlarm);
+        handler.removeCallbacks(fullAlarm);
+    }
+}
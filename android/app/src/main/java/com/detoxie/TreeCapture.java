@@ -0,0 +1,68 @@
+package com.detoxie;
+
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+// Reads the window's accessibility tree breadth-first into a TreeSnapshot
+// within the snapshot's depth/node budget, recycling every node as soon as its
+// fields are copied. A child is only fetched if it still fits in the budget,
+// so no getChild call is spent on a node that would be thrown away. The queue
+// is reused between captures. Worker thread only.
+public class TreeCapture {
+    private final ArrayDeque<AccessibilityNodeInfo> queue = new ArrayDeque<>();
+    // Parent index of each queued node, in queue order
+    private int[] queuedParents = new int[64];
+
+    // Replaces the snapshot's contents with the tree under root and recycles
+    // every node it touched, including root. A null root yields an empty snapshot.
+    public void capture(TreeSnapshot snapshot, AccessibilityNodeInfo root) {
+        if (root == null) {
+            snapshot.clear();
+            return;
+        }
+        snapshot.begin();
+
+        int maxDepth = snapshot.getMaxDepth();
+        int maxNodes = snapshot.getMaxNodes();
+        queue.add(root);
+        int enqueued = 0;
+        int polled = 0;
+        queuedParents[enqueued++] = -1;
+        int level = 0;
+        while (!queue.isEmpty()) {
+            int levelSize = queue.size();
+            boolean expand = level < maxDepth;
+            for (int i = 0; i < levelSize; i++) {
+                AccessibilityNodeInfo node = queue.poll();
+                int parentIndex = queuedParents[polled++];
+                int index = snapshot.size();
+                snapshot.appendNode(parentIndex, level, node.isSelected(), node.getText(),
+                    node.getContentDescription(), node.getViewIdResourceName());
+                int childCount = node.getChildCount();
+                if (expand) {
+                    for (int c = 0; c < childCount; c++) {
+                        // Every queued node gets a slot in the snapshot
+                        if (snapshot.size() + queue.size() >= maxNodes) {
+                            snapshot.markTruncated();
+                            break;
+                        }
+                        AccessibilityNodeInfo child = node.getChild(c);
+                        if (child != null) {
+                            queue.add(child);
+                            if (enqueued == queuedParents.length) {
+                                queuedParents = Arrays.copyOf(queuedParents, enqueued * 2);
+                            }
+                            queuedParents[enqueued++] = index;
+                        }
+                    }
+                } else if (childCount > 0) {
+                    snapshot.markTruncated();
+                }
+                node.recycle();
+            }
+            level++;
+        }
+    }
+}
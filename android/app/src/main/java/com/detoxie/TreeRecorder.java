@@ -0,0 +1,115 @@
+package com.detoxie;
+
+import android.util.Log;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Recorder mode: while a label is set, every classified window of a monitored
+// app is written to filesDir/detection_recordings as an anonymized
+// TreeRecording sample. Pull the files into src/test/resources/detection_corpus
+// to extend the replay corpus. Debug aid only; costs an extra tree walk per
+// event. Worker thread only.
+public class TreeRecorder {
+    private static final String TAG = "TreeRecorder";
+    static final String DIR_NAME = "detection_recordings";
+    private static final int MAX_SAMPLES = 2000;
+
+    // Generic UI words kept alongside the rule keywords so recordings stay readable
+    private static final String[] UI_WORDS = {
+        "home", "search", "explore", "reels", "reel", "shorts", "short", "profile", "subscriptions",
+        "library", "you", "create", "feed", "tab", "selected", "player", "video", "like", "comment",
+        "share", "remix", "more", "back", "close", "camera", "messages", "notifications", "activity",
+    };
+
+    private final File file;
+    private final String label;
+    private final Set<String> vocabulary;
+    private final int maxDepth;
+    private final int maxNodes;
+    private final ArrayDeque<AccessibilityNodeInfo> queue = new ArrayDeque<>();
+    private int samples;
+
+    public TreeRecorder(File baseDir, String label, KeywordMatcher keywords, int maxDepth, int maxNodes) {
+        File dir = new File(baseDir, DIR_NAME);
+        this.file = new File(dir, "recording_" + System.currentTimeMillis() + ".tree");
+        this.label = label;
+        this.maxDepth = maxDepth;
+        this.maxNodes = maxNodes;
+        this.vocabulary = new HashSet<>(Arrays.asList(UI_WORDS));
+        for (int i = 0; i < keywords.size(); i++) {
+            for (String word : keywords.getKeyword(i).split("[^\\p{Alnum}_]+")) {
+                if (!word.isEmpty()) vocabulary.add(word);
+            }
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    // Walks root the same way TreeSnapshot does and recycles every node
+    public void record(AccessibilityNodeInfo root, String packageName) {
+        if (root == null) return;
+        if (samples >= MAX_SAMPLES) {
+            root.recycle();
+            return;
+        }
+
+        List<TreeRecording.Node> nodes = new ArrayList<>();
+        ArrayDeque<Integer> parents = new ArrayDeque<>();
+        queue.add(root);
+        parents.add(-1);
+        int level = 0;
+        while (!queue.isEmpty()) {
+            int levelSize = queue.size();
+            for (int i = 0; i < levelSize; i++) {
+                AccessibilityNodeInfo node = queue.poll();
+                int parent = parents.poll();
+                int index = nodes.size();
+                nodes.add(new TreeRecording.Node(parent, level, node.isSelected(), node.getViewIdResourceName(),
+                    TreeRecording.anonymize(node.getText(), vocabulary),
+                    TreeRecording.anonymize(node.getContentDescription(), vocabulary)));
+                // Every queued node gets recorded, so nothing is fetched past the budget
+                for (int c = 0; level < maxDepth && c < node.getChildCount()
+                        && nodes.size() + queue.size() < maxNodes; c++) {
+                    AccessibilityNodeInfo child = node.getChild(c);
+                    if (child != null) {
+                        queue.add(child);
+                        parents.add(index);
+                    }
+                }
+                node.recycle();
+            }
+            level++;
+        }
+
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            Log.e(TAG, "Cannot create " + dir);
+            return;
+        }
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file, true), StandardCharsets.UTF_8))) {
+            TreeRecording.write(out, new TreeRecording.Sample(label, packageName, System.currentTimeMillis(), nodes));
+            samples++;
+            if (samples == MAX_SAMPLES) {
+                Log.w(TAG, "Recording limit reached, further windows are not recorded: " + file);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write recording", e);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.detoxie;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+// Plain-text format for labelled accessibility trees, written by TreeRecorder on
+// the device and replayed into a TreeSnapshot by the JVM detection harness.
+//
+//   tree <TAB> label <TAB> package <TAB> timestampMs <TAB> nodeCount
+//   parent <TAB> depth <TAB> selected(0/1) <TAB> viewId <TAB> text <TAB> description
+//
+// One node line per node in breadth-first order; "-" stands for a missing value.
+// Text is anonymized before it is written: only vocabulary words survive.
+public final class TreeRecording {
+    public static final String LABEL_NONE = "none";
+
+    private static final String HEADER = "tree";
+    private static final String MISSING = "-";
+
+    public static final class Node {
+        public final int parent;
+        public final int depth;
+        public final boolean selected;
+        public final String viewId;
+        public final String text;
+        public final String description;
+
+        public Node(int parent, int depth, boolean selected, String viewId, String text, String description) {
+            this.parent = parent;
+            this.depth = depth;
+            this.selected = selected;
+            this.viewId = viewId;
+            this.text = text;
+            this.description = description;
+        }
+    }
+
+    public static final class Sample {
+        // Platform the screen really shows ("instagram", "youtube") or LABEL_NONE
+        public final String label;
+        public final String packageName;
+        public final long timestampMs;
+        public final List<Node> nodes;
+
+        public Sample(String label, String packageName, long timestampMs, List<Node> nodes) {
+            this.label = label;
+            this.packageName = packageName;
+            this.timestampMs = timestampMs;
+            this.nodes = nodes;
+        }
+
+        public void replayInto(TreeSnapshot snapshot) {
+            snapshot.begin();
+            for (Node node : nodes) {
+                snapshot.appendNode(node.parent, node.depth, node.selected, node.text, node.description, node.viewId);
+            }
+        }
+    }
+
+    private TreeRecording() {}
+
+    public static void write(Writer out, Sample sample) throws IOException {
+        out.write(HEADER + '\t' + sample.label + '\t' + sample.packageName + '\t'
+            + sample.timestampMs + '\t' + sample.nodes.size() + '\n');
+        for (Node node : sample.nodes) {
+            out.write(node.parent + "\t" + node.depth + '\t' + (node.selected ? '1' : '0') + '\t'
+                + escape(node.viewId) + '\t' + escape(node.text) + '\t' + escape(node.description) + '\n');
+        }
+    }
+
+    // Reads every sample in the stream; blank lines and lines starting with '#' are skipped
+    public static List<Sample> read(BufferedReader in) throws IOException {
+        List<Sample> samples = new ArrayList<>();
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] header = line.split("\t", -1);
+            if (header.length != 5 || !HEADER.equals(header[0])) {
+                throw new IOException("Expected tree header, got: " + line);
+            }
+            int count = Integer.parseInt(header[4]);
+            List<Node> nodes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String nodeLine = in.readLine();
+                String[] fields = nodeLine != null ? nodeLine.split("\t", -1) : new String[0];
+                if (fields.length != 6) {
+                    throw new IOException("Malformed node line in " + header[1] + " sample: " + nodeLine);
+                }
+                nodes.add(new Node(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), "1".equals(fields[2]),
+                    unescape(fields[3]), unescape(fields[4]), unescape(fields[5])));
+            }
+            samples.add(new Sample(header[1], header[2], Long.parseLong(header[3]), nodes));
+        }
+        return samples;
+    }
+
+    // Keeps words (letters, digits and '_') found in the vocabulary, lower-cased;
+    // every other word becomes '*' so recordings never carry user content
+    public static String anonymize(CharSequence text, Set<String> vocabulary) {
+        if (text == null) return null;
+        StringBuilder out = new StringBuilder(text.length());
+        int i = 0;
+        int length = text.length();
+        while (i < length) {
+            char ch = text.charAt(i);
+            if (!isWordChar(ch)) {
+                out.append(Character.isWhitespace(ch) ? ' ' : ch);
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < length && isWordChar(text.charAt(i))) i++;
+            String word = text.subSequence(start, i).toString().toLowerCase(Locale.US);
+            out.append(vocabulary.contains(word) ? word : "*");
+        }
+        return out.toString();
+    }
+
+    private static boolean isWordChar(char ch) {
+        return Character.isLetterOrDigit(ch) || ch == '_';
+    }
+
+    private static String escape(String value) {
+        if (value == null) return MISSING;
+        if (value.equals(MISSING)) return "\\-";
+        StringBuilder out = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '\\': out.append("\\\\"); break;
+                case '\t': out.append("\\t"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                default: out.append(ch);
+            }
+        }
+        return out.toString();
+    }
+
+    private static String unescape(String value) {
+        if (value.equals(MISSING)) return null;
+        StringBuilder out = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                switch (next) {
+                    case 't': out.append('\t'); break;
+                    case 'n': out.append('\n'); break;
+                    case 'r': out.append('\r'); break;
+                    default: out.append(next);
+                }
+            } else {
+                out.append(ch);
+            }
+        }
+        return out.toString();
+    }
+}
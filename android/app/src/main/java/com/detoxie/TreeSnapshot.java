@@ -0,0 +1,135 @@
+package com.detoxie;
+
+import java.util.Arrays;
+
+// Flattened copy of the active window's accessibility tree, filled once per
+// event by TreeCapture (or from a recording) and shared by every check made
+// while handling it (detectors, overlay guard, dismiss). Nodes arrive
+// breadth-first within a depth/node budget. Text, description and view id are
+// reduced to keyword masks by the rules' KeywordMatcher without copying the
+// strings. Arrays are reused between trees. No Android types, so the JVM
+// replay harness and benchmarks use it as is. Worker thread only.
+public class TreeSnapshot {
+    private final KeywordMatcher keywords;
+    private final int maxDepth;
+    private final int maxNodes;
+
+    private int size;
+    private int depthReached;
+    private boolean hasRoot;
+    private boolean truncated;
+
+    // Per node, in breadth-first order; index 0 is the root
+    private int[] depth;
+    private int[] parent;           // -1 for the root
+    private boolean[] selected;
+    private long[] textMatch;       // KeywordMatcher.scan result
+    private int[] descriptionMatch; // keywords contained
+    private int[] viewIdMatch;      // keywords contained
+    private int[] viewIdHash;
+    private String[] viewId;        // as reported, null when absent
+
+    public TreeSnapshot(KeywordMatcher keywords, int maxDepth, int maxNodes) {
+        this.keywords = keywords;
+        this.maxDepth = maxDepth;
+        this.maxNodes = maxNodes;
+        allocate(Math.min(maxNodes, 64));
+    }
+
+    public void clear() {
+        Arrays.fill(viewId, 0, size, null);
+        size = 0;
+        depthReached = 0;
+        hasRoot = false;
+        truncated = false;
+    }
+
+    // Starts an empty tree to be filled with appendNode
+    public void begin() {
+        clear();
+        hasRoot = true;
+    }
+
+    // Adds the next node in breadth-first order; nodes past the budget are
+    // dropped and mark the tree truncated
+    public void appendNode(int parentIndex, int level, boolean isSelected, CharSequence text,
+                           CharSequence description, String id) {
+        if (size >= maxNodes || level > maxDepth) {
+            truncated = true;
+            return;
+        }
+        if (size == depth.length) {
+            allocate(Math.min(maxNodes, size * 2));
+        }
+        int i = size++;
+        depth[i] = level;
+        parent[i] = parentIndex;
+        depthReached = Math.max(depthReached, level);
+        selected[i] = isSelected;
+
+        textMatch[i] = keywords.scan(text);
+        descriptionMatch[i] = KeywordMatcher.contained(keywords.scan(description));
+
+        viewId[i] = id;
+        viewIdHash[i] = id != null ? id.hashCode() : 0;
+        viewIdMatch[i] = KeywordMatcher.contained(keywords.scan(id));
+    }
+
+    private void allocate(int capacity) {
+        if (depth != null && capacity <= depth.length) return;
+        depth = depth == null ? new int[capacity] : Arrays.copyOf(depth, capacity);
+        parent = parent == null ? new int[capacity] : Arrays.copyOf(parent, capacity);
+        selected = selected == null ? new boolean[capacity] : Arrays.copyOf(selected, capacity);
+        textMatch = textMatch == null ? new long[capacity] : Arrays.copyOf(textMatch, capacity);
+        descriptionMatch = descriptionMatch == null ? new int[capacity] : Arrays.copyOf(descriptionMatch, capacity);
+        viewIdMatch = viewIdMatch == null ? new int[capacity] : Arrays.copyOf(viewIdMatch, capacity);
+        viewIdHash = viewIdHash == null ? new int[capacity] : Arrays.copyOf(viewIdHash, capacity);
+        viewId = viewId == null ? new String[capacity] : Arrays.copyOf(viewId, capacity);
+    }
+
+    // For sources that skip nodes before appending them (e.g. depth-limited children)
+    public void markTruncated() { truncated = true; }
+
+    public boolean hasRoot() { return hasRoot; }
+
+    public int getMaxDepth() { return maxDepth; }
+
+    public int getMaxNodes() { return maxNodes; }
+
+    public int size() { return size; }
+
+    public int getDepthReached() { return depthReached; }
+
+    // True when the budget cut the capture short, so absence of a node proves nothing
+    public boolean isTruncated() { return truncated; }
+
+    public int getDepth(int index) { return depth[index]; }
+
+    public boolean isSelected(int index) { return selected[index]; }
+
+    public long getTextMatch(int index) { return textMatch[index]; }
+
+    public int getDescriptionMatch(int index) { return descriptionMatch[index]; }
+
+    public int getViewIdMatch(int index) { return viewIdMatch[index]; }
+
+    public String getViewId(int index) { return viewId[index]; }
+
+    // View ids of the node and its ancestors, nearest first, skipping nodes without one
+    public String[] getViewIdPath(int index) {
+        int count = 0;
+        for (int i = index; i >= 0; i = parent[i]) {
+            if (viewId[i] != null) count++;
+        }
+        String[] path = new String[count];
+        int n = 0;
+        for (int i = index; i >= 0; i = parent[i]) {
+            if (viewId[i] != null) path[n++] = viewId[i];
+        }
+        return path;
+    }
+
+    public boolean viewIdEquals(int index, String id) {
+        return viewIdHash[index] == id.hashCode() && id.equals(viewId[index]);
+    }
+}
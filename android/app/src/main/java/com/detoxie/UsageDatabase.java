@@ -0,0 +1,255 @@
+package com.detoxie;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+// Writer for the usage tables JS reads, in the same database file that
+// react-native-sqlite-storage opens (src/database/database.config.ts). Each
+// finished session is one usage_sessions row plus upserts into daily_stats and
+// platform_daily_stats, written through statements compiled once. Sessions are
+// queued and a flush commits everything queued in one transaction; if it fails
+// (the JS connection holding the write lock past the busy timeout, say) they
+// stay queued for the next flush. Worker thread only.
+public class UsageDatabase extends SQLiteOpenHelper {
+    // Must match DB_NAME in database.config.ts; "default" location is getDatabasePath()
+    static final String DB_NAME = "ReelsTracker.db";
+    private static final int DB_VERSION = 2; // 2: usage_sessions.platform
+
+    // Same DDL as database.tables.ts, for when the service runs before the app ever has.
+    // instagram_opened/instagram_closed predate YouTube; they hold the session's
+    // open/close times for every platform, and platform says which one it was.
+    private static final String CREATE_USAGE_SESSIONS =
+        "CREATE TABLE IF NOT EXISTS usage_sessions ("
+            + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + "session_duration REAL NOT NULL,"
+            + "session_date TEXT NOT NULL,"
+            + "session_time TEXT NOT NULL,"
+            + "instagram_opened TEXT NOT NULL,"
+            + "instagram_closed TEXT NOT NULL,"
+            + "reels_count INTEGER DEFAULT 0,"
+            + "created_at DATETIME DEFAULT CURRENT_TIMESTAMP,"
+            + "platform TEXT)";
+    private static final String CREATE_DAILY_STATS =
+        "CREATE TABLE IF NOT EXISTS daily_stats ("
+            + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + "date TEXT UNIQUE NOT NULL,"
+            + "total_duration REAL NOT NULL,"
+            + "session_count INTEGER NOT NULL,"
+            + "avg_session_duration REAL NOT NULL,"
+            + "updated_at DATETIME DEFAULT CURRENT_TIMESTAMP)";
+    private static final String CREATE_PLATFORM_DAILY_STATS =
+        "CREATE TABLE IF NOT EXISTS platform_daily_stats ("
+            + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + "date TEXT NOT NULL,"
+            + "platform TEXT NOT NULL,"
+            + "total_duration REAL NOT NULL DEFAULT 0,"
+            + "session_count INTEGER NOT NULL DEFAULT 0,"
+            + "updated_at DATETIME DEFAULT CURRENT_TIMESTAMP,"
+            + "UNIQUE(date, platform))";
+
+    private static final String INSERT_SESSION =
+        "INSERT INTO usage_sessions (session_duration, session_date, session_time,"
+            + " instagram_opened, instagram_closed, platform) VALUES (?, ?, ?, ?, ?, ?)";
+    // Upsert needs SQLite 3.24 (Android 11+); older releases insert-or-ignore, then update
+    private static final String UPSERT_DAILY =
+        "INSERT INTO platform_daily_stats (date, platform, total_duration, session_count)"
+            + " VALUES (?1, ?2, ?3, 1) ON CONFLICT(date, platform) DO UPDATE SET"
+            + " total_duration = total_duration + excluded.total_duration,"
+            + " session_count = session_count + 1, updated_at = CURRENT_TIMESTAMP";
+    private static final String INSERT_DAILY_IF_MISSING =
+        "INSERT OR IGNORE INTO platform_daily_stats (date, platform, total_duration, session_count)"
+            + " VALUES (?1, ?2, 0, 0)";
+    private static final String ADD_TO_DAILY =
+        "UPDATE platform_daily_stats SET total_duration = total_duration + ?3,"
+            + " session_count = session_count + 1, updated_at = CURRENT_TIMESTAMP"
+            + " WHERE date = ?1 AND platform = ?2";
+    // All platforms together, with the running average
+    private static final String UPSERT_DAY_TOTAL =
+        "INSERT INTO daily_stats (date, total_duration, session_count, avg_session_duration)"
+            + " VALUES (?1, ?2, 1, ?2) ON CONFLICT(date) DO UPDATE SET"
+            + " total_duration = total_duration + excluded.total_duration,"
+            + " session_count = session_count + 1,"
+            + " avg_session_duration = (total_duration + excluded.total_duration) / (session_count + 1),"
+            + " updated_at = CURRENT_TIMESTAMP";
+    private static final String INSERT_DAY_TOTAL_IF_MISSING =
+        "INSERT OR IGNORE INTO daily_stats (date, total_duration, session_count, avg_session_duration)"
+            + " VALUES (?1, 0, 0, 0)";
+    // SET expressions all see the old row, so the average uses the pre-update totals
+    private static final String ADD_TO_DAY_TOTAL =
+        "UPDATE daily_stats SET total_duration = total_duration + ?2,"
+            + " session_count = session_count + 1,"
+            + " avg_session_duration = (total_duration + ?2) / (session_count + 1),"
+            + " updated_at = CURRENT_TIMESTAMP WHERE date = ?1";
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private static final class Session {
+        final String platform;
+        final String date;
+        final long startMs;
+        final long endMs;
+        final long durationMs;
+
+        Session(String platform, String date, long startMs, long endMs, long durationMs) {
+            this.platform = platform;
+            this.date = date;
+            this.startMs = startMs;
+            this.endMs = endMs;
+            this.durationMs = durationMs;
+        }
+    }
+
+    private final List<Session> pending = new ArrayList<>();
+    private SQLiteStatement insertSession;
+    private SQLiteStatement upsertDaily;
+    private SQLiteStatement insertDailyIfMissing;
+    private SQLiteStatement upsertDayTotal;
+    private SQLiteStatement insertDayTotalIfMissing;
+
+    public UsageDatabase(Context context) {
+        super(context, DB_NAME, null, DB_VERSION);
+        // Readers on the JS connection no longer block our commits, and vice versa
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL(CREATE_USAGE_SESSIONS);
+        db.execSQL(CREATE_DAILY_STATS);
+        db.execSQL(CREATE_PLATFORM_DAILY_STATS);
+        // JS doesn't set user_version, so a file it created comes through here too
+        addPlatformColumnIfMissing(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            addPlatformColumnIfMissing(db);
+        }
+    }
+
+    private static void addPlatformColumnIfMissing(SQLiteDatabase db) {
+        try (Cursor columns = db.rawQuery("PRAGMA table_info(usage_sessions)", null)) {
+            int name = columns.getColumnIndexOrThrow("name");
+            while (columns.moveToNext()) {
+                if ("platform".equals(columns.getString(name))) return;
+            }
+        }
+        db.execSQL("ALTER TABLE usage_sessions ADD COLUMN platform TEXT");
+    }
+
+    // Queues a finished session. date is the local "yyyy-MM-dd" day it is
+    // counted under; the whole session goes to that day.
+    public void recordSession(String platform, String date, long startMs, long endMs, long durationMs) {
+        if (platform == null || durationMs <= 0) return;
+        pending.add(new Session(platform, date, startMs, endMs, durationMs));
+    }
+
+    public boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    // Commits every queued session in one transaction
+    public void flush() {
+        if (pending.isEmpty()) return;
+        SQLiteDatabase db = getWritableDatabase();
+        compileStatements(db);
+        db.beginTransactionNonExclusive();
+        try {
+            for (Session session : pending) {
+                write(session);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        pending.clear();
+    }
+
+    private void compileStatements(SQLiteDatabase db) {
+        if (insertSession != null) return;
+        insertSession = db.compileStatement(INSERT_SESSION);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            upsertDaily = db.compileStatement(UPSERT_DAILY);
+            upsertDayTotal = db.compileStatement(UPSERT_DAY_TOTAL);
+        } else {
+            insertDailyIfMissing = db.compileStatement(INSERT_DAILY_IF_MISSING);
+            upsertDaily = db.compileStatement(ADD_TO_DAILY);
+            insertDayTotalIfMissing = db.compileStatement(INSERT_DAY_TOTAL_IF_MISSING);
+            upsertDayTotal = db.compileStatement(ADD_TO_DAY_TOTAL);
+        }
+    }
+
+    private void write(Session session) {
+        ZoneId zone = ZoneId.systemDefault();
+        double seconds = session.durationMs / 1000.0;
+
+        insertSession.clearBindings();
+        insertSession.bindDouble(1, seconds);
+        insertSession.bindString(2, session.date);
+        insertSession.bindString(3, TIME_FORMAT.format(Instant.ofEpochMilli(session.endMs).atZone(zone)));
+        insertSession.bindString(4, Instant.ofEpochMilli(session.startMs).toString());
+        insertSession.bindString(5, Instant.ofEpochMilli(session.endMs).toString());
+        insertSession.bindString(6, session.platform);
+        insertSession.executeInsert();
+
+        if (insertDayTotalIfMissing != null) {
+            insertDayTotalIfMissing.clearBindings();
+            insertDayTotalIfMissing.bindString(1, session.date);
+            insertDayTotalIfMissing.executeInsert();
+        }
+        upsertDayTotal.clearBindings();
+        upsertDayTotal.bindString(1, session.date);
+        upsertDayTotal.bindDouble(2, seconds);
+        if (insertDayTotalIfMissing != null) {
+            upsertDayTotal.executeUpdateDelete();
+        } else {
+            upsertDayTotal.executeInsert();
+        }
+
+        if (insertDailyIfMissing != null) {
+            insertDailyIfMissing.clearBindings();
+            insertDailyIfMissing.bindString(1, session.date);
+            insertDailyIfMissing.bindString(2, session.platform);
+            insertDailyIfMissing.executeInsert();
+        }
+        upsertDaily.clearBindings();
+        upsertDaily.bindString(1, session.date);
+        upsertDaily.bindString(2, session.platform);
+        upsertDaily.bindDouble(3, seconds);
+        if (insertDailyIfMissing != null) {
+            upsertDaily.executeUpdateDelete();
+        } else {
+            upsertDaily.executeInsert();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (insertSession != null) {
+            insertSession.close();
+            upsertDaily.close();
+            upsertDayTotal.close();
+            if (insertDailyIfMissing != null) {
+                insertDailyIfMissing.close();
+                insertDayTotalIfMissing.close();
+            }
+            insertSession = null;
+            upsertDaily = null;
+            insertDailyIfMissing = null;
+            upsertDayTotal = null;
+            insertDayTotalIfMissing = null;
+        }
+        super.close();
+    }
+}
@@ -0,0 +1,207 @@
+package com.detoxie;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Content time per platform at three resolutions, each a fixed-size ring of
+// primitive longs indexed by absolute bucket number:
+//   minute - the last 24 hours
+//   hour   - the last 31 days
+//   day    - the last 2 years, in local calendar days
+// Every credited span is added to all three rings, so the coarse rings are
+// always the downsampled form of the fine ones and old minutes can fall off
+// without losing their totals. Persisted as varints in a small binary file.
+// Written by the service worker, read by the module; all methods synchronized.
+public class UsageTimeSeries {
+    static final String FILE_NAME = "usage_series.bin";
+
+    public static final int RESOLUTION_MINUTE = 0;
+    public static final int RESOLUTION_HOUR = 1;
+    public static final int RESOLUTION_DAY = 2;
+
+    public static final long MINUTE_MS = 60_000L;
+    public static final long HOUR_MS = 60 * MINUTE_MS;
+
+    // Index = SessionEventLog platform code - 1
+    static final int PLATFORM_COUNT = 2;
+
+    private static final int MAGIC = 0x44545553; // "DTUS"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int[] CAPACITY = {24 * 60, 31 * 24, 2 * 366};
+
+    public interface Visitor {
+        // One call per bucket from the oldest requested to the newest, gaps included
+        void onBucket(long bucket, long[] msByPlatform);
+    }
+
+    private static final class Ring {
+        final int capacity;
+        final long[] values; // platform * capacity + slot
+        long newest = Long.MIN_VALUE; // bucket number held by the newest slot
+
+        Ring(int capacity) {
+            this.capacity = capacity;
+            this.values = new long[PLATFORM_COUNT * capacity];
+        }
+
+        void add(long bucket, int platform, long ms) {
+            if (newest == Long.MIN_VALUE || bucket > newest) {
+                advanceTo(bucket);
+            } else if (bucket <= newest - capacity) {
+                return; // older than the ring remembers
+            }
+            values[platform * capacity + slot(bucket)] += ms;
+        }
+
+        long get(long bucket, int platform) {
+            if (newest == Long.MIN_VALUE || bucket > newest || bucket <= newest - capacity) return 0;
+            return values[platform * capacity + slot(bucket)];
+        }
+
+        // Clears the slots between the old newest bucket and the new one
+        private void advanceTo(long bucket) {
+            long gap = newest == Long.MIN_VALUE ? capacity : bucket - newest;
+            if (gap >= capacity) {
+                Arrays.fill(values, 0);
+            } else {
+                for (long b = newest + 1; b <= bucket; b++) {
+                    int s = slot(b);
+                    for (int p = 0; p < PLATFORM_COUNT; p++) {
+                        values[p * capacity + s] = 0;
+                    }
+                }
+            }
+            newest = bucket;
+        }
+
+        private int slot(long bucket) {
+            return (int) Math.floorMod(bucket, (long) capacity);
+        }
+    }
+
+    private final Ring[] rings = new Ring[CAPACITY.length];
+    private boolean dirty;
+
+    public UsageTimeSeries() {
+        for (int r = 0; r < rings.length; r++) {
+            rings[r] = new Ring(CAPACITY[r]);
+        }
+    }
+
+    public static int capacity(int resolution) {
+        return CAPACITY[resolution];
+    }
+
+    // Credits the span [endMs - ms, endMs) of wall time to the platform. The
+    // minute and hour rings split it at bucket edges; the day ring takes it
+    // whole on epochDay, the local day the span ended in.
+    public synchronized void add(byte platformCode, long endMs, long ms, long epochDay) {
+        int platform = platformCode - 1;
+        if (platform < 0 || platform >= PLATFORM_COUNT || ms <= 0) return;
+        addSpan(rings[RESOLUTION_MINUTE], MINUTE_MS, platform, endMs - ms, endMs);
+        addSpan(rings[RESOLUTION_HOUR], HOUR_MS, platform, endMs - ms, endMs);
+        rings[RESOLUTION_DAY].add(epochDay, platform, ms);
+        dirty = true;
+    }
+
+    private static void addSpan(Ring ring, long bucketMs, int platform, long startMs, long endMs) {
+        long start = startMs;
+        while (start < endMs) {
+            long bucket = Math.floorDiv(start, bucketMs);
+            long bucketEnd = (bucket + 1) * bucketMs;
+            long end = Math.min(endMs, bucketEnd);
+            ring.add(bucket, platform, end - start);
+            start = end;
+        }
+    }
+
+    // Visits buckets [fromBucket, toBucket] of one resolution; buckets the ring
+    // no longer (or not yet) holds read as zero. Day buckets are epoch days.
+    // The range is clipped to the last capacity(resolution) buckets.
+    public synchronized void query(int resolution, long fromBucket, long toBucket, Visitor visitor) {
+        Ring ring = rings[resolution];
+        fromBucket = Math.max(fromBucket, toBucket - ring.capacity + 1);
+        long[] row = new long[PLATFORM_COUNT];
+        for (long bucket = fromBucket; bucket <= toBucket; bucket++) {
+            for (int p = 0; p < PLATFORM_COUNT; p++) {
+                row[p] = ring.get(bucket, p);
+            }
+            visitor.onBucket(bucket, row);
+        }
+    }
+
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    // Returns an empty series when the file is missing
+    public static UsageTimeSeries load(File dir) throws IOException {
+        UsageTimeSeries series = new UsageTimeSeries();
+        File file = new File(dir, FILE_NAME);
+        if (!file.exists()) return series;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unrecognized usage series file");
+            }
+            for (Ring ring : series.rings) {
+                if (in.readInt() != ring.capacity || in.readInt() != PLATFORM_COUNT) {
+                    throw new IOException("Usage series layout changed");
+                }
+                ring.newest = in.readLong();
+                for (int i = 0; i < ring.values.length; i++) {
+                    ring.values[i] = readVarLong(in);
+                }
+            }
+        }
+        return series;
+    }
+
+    // Written to a temp file and renamed so a crash never leaves a torn snapshot
+    public synchronized void save(File dir) throws IOException {
+        File tmp = new File(dir, FILE_NAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            for (Ring ring : rings) {
+                out.writeInt(ring.capacity);
+                out.writeInt(PLATFORM_COUNT);
+                out.writeLong(ring.newest);
+                for (long value : ring.values) {
+                    writeVarLong(out, value);
+                }
+            }
+        }
+        if (!tmp.renameTo(new File(dir, FILE_NAME))) {
+            throw new IOException("Failed to replace usage series file");
+        }
+        dirty = false;
+    }
+
+    // Most slots are zero or a few thousand ms, so 1-3 bytes instead of 8
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint in usage series");
+    }
+}
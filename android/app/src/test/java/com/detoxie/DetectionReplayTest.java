@@ -0,0 +1,166 @@
+package com.detoxie;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+// Replays the labelled trees in src/test/resources/detection_corpus through the
+// detectors built from the shipped detection_rules.json, reports precision,
+// recall, nodes visited and time per classification, and fails when any of
+// them regresses past thresholds.properties.
+public class DetectionReplayTest {
+    private static final String RULES_PATH = "src/main/assets/" + DetectionRules.FILE_NAME;
+    private static final String CORPUS_DIR = "detection_corpus";
+    private static final int SNAPSHOT_MAX_DEPTH = 32;
+    private static final int SNAPSHOT_MAX_NODES = 400;
+    private static final int WARMUP_ROUNDS = 2_000;
+    private static final int TIMED_ROUNDS = 10_000;
+
+    @Test
+    public void detectorsMeetCorpusThresholds() throws Exception {
+        DetectionRules rules = DetectionRules.parse(new String(
+            Files.readAllBytes(new File(RULES_PATH).toPath()), StandardCharsets.UTF_8));
+        DetectorRegistry detectors = rules.createRegistry();
+        TreeSnapshot snapshot = new TreeSnapshot(rules.keywords, SNAPSHOT_MAX_DEPTH, SNAPSHOT_MAX_NODES);
+
+        File corpusDir = corpusDir();
+        List<TreeRecording.Sample> samples = loadCorpus(corpusDir);
+        assertFalse("Empty detection corpus", samples.isEmpty());
+
+        int truePositives = 0;
+        int falsePositives = 0;
+        int falseNegatives = 0;
+        int trueNegatives = 0;
+        long nodesVisited = 0;
+        int classified = 0;
+        StringBuilder misses = new StringBuilder();
+
+        for (TreeRecording.Sample sample : samples) {
+            PlatformDetector detector = detectors.forPackage(sample.packageName);
+            if (detector == null) continue;
+
+            sample.replayInto(snapshot);
+            ScreenClassifier.Result result = detector.detect(snapshot);
+            boolean expected = detector.getPlatform().equals(sample.label);
+            classified++;
+            nodesVisited += result.nodesVisited;
+
+            if (result.matched && expected) truePositives++;
+            else if (result.matched) falsePositives++;
+            else if (expected) falseNegatives++;
+            else trueNegatives++;
+
+            if (result.matched != expected) {
+                misses.append("\n  ").append(result.matched ? "FP " : "FN ")
+                    .append(sample.packageName).append(" @").append(sample.timestampMs);
+            }
+        }
+        assertTrue("No corpus sample belongs to a registered detector", classified > 0);
+
+        double nanosPerClassification = timeClassifications(samples, detectors, snapshot);
+        double precision = truePositives + falsePositives == 0 ? 1.0
+            : (double) truePositives / (truePositives + falsePositives);
+        double recall = truePositives + falseNegatives == 0 ? 1.0
+            : (double) truePositives / (truePositives + falseNegatives);
+        double meanNodes = (double) nodesVisited / classified;
+
+        System.out.printf("Detection replay: %d samples, TP=%d FP=%d FN=%d TN=%d%n",
+            classified, truePositives, falsePositives, falseNegatives, trueNegatives);
+        System.out.printf("  precision=%.3f recall=%.3f meanNodesVisited=%.1f nsPerClassification=%.0f%s%n",
+            precision, recall, meanNodes, nanosPerClassification, misses);
+
+        Properties thresholds = new Properties();
+        try (InputStream in = new FileInputStream(new File(corpusDir, "thresholds.properties"))) {
+            thresholds.load(in);
+        }
+        assertAtLeast("precision", precision, thresholds);
+        assertAtLeast("recall", recall, thresholds);
+        assertAtMost("meanNodesVisited", meanNodes, thresholds);
+        assertAtMost("meanNanosPerClassification", nanosPerClassification, thresholds);
+    }
+
+    // Replays and classifies every sample repeatedly; the snapshot fill is part
+    // of the measured cost, like capture is on the device
+    private static double timeClassifications(List<TreeRecording.Sample> samples, DetectorRegistry detectors,
+                                              TreeSnapshot snapshot) {
+        List<TreeRecording.Sample> usable = new ArrayList<>();
+        List<PlatformDetector> usableDetectors = new ArrayList<>();
+        for (TreeRecording.Sample sample : samples) {
+            PlatformDetector detector = detectors.forPackage(sample.packageName);
+            if (detector != null) {
+                usable.add(sample);
+                usableDetectors.add(detector);
+            }
+        }
+
+        int sink = 0;
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            sink += classifyAll(usable, usableDetectors, snapshot);
+        }
+        long start = System.nanoTime();
+        for (int round = 0; round < TIMED_ROUNDS; round++) {
+            sink += classifyAll(usable, usableDetectors, snapshot);
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(sink >= 0);
+        return (double) elapsed / ((long) TIMED_ROUNDS * usable.size());
+    }
+
+    private static int classifyAll(List<TreeRecording.Sample> samples, List<PlatformDetector> detectors,
+                                   TreeSnapshot snapshot) {
+        int matched = 0;
+        for (int i = 0; i < samples.size(); i++) {
+            samples.get(i).replayInto(snapshot);
+            if (detectors.get(i).detect(snapshot).matched) matched++;
+        }
+        return matched;
+    }
+
+    private static File corpusDir() throws Exception {
+        URL url = DetectionReplayTest.class.getClassLoader().getResource(CORPUS_DIR);
+        assertNotNull("Missing test resource " + CORPUS_DIR, url);
+        return new File(url.toURI());
+    }
+
+    private static List<TreeRecording.Sample> loadCorpus(File dir) throws Exception {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".tree"));
+        assertNotNull(files);
+        Arrays.sort(files);
+        List<TreeRecording.Sample> samples = new ArrayList<>();
+        for (File file : files) {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(file), StandardCharsets.UTF_8))) {
+                samples.addAll(TreeRecording.read(in));
+            }
+        }
+        return samples;
+    }
+
+    private static void assertAtLeast(String name, double value, Properties thresholds) {
+        String key = "min" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        double min = Double.parseDouble(thresholds.getProperty(key, "0"));
+        assertTrue(String.format("%s %.3f fell below %s=%.3f", name, value, key, min), value >= min);
+    }
+
+    private static void assertAtMost(String name, double value, Properties thresholds) {
+        String key = "max" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        String max = thresholds.getProperty(key);
+        if (max == null) return;
+        assertTrue(String.format("%s %.1f exceeded %s=%s", name, value, key, max), value <= Double.parseDouble(max));
+    }
+}
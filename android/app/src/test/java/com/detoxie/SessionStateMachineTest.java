@@ -0,0 +1,275 @@
+package com.detoxie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Drives the session state machine through the event sequences the service
+// sees and checks which side effects ran, in order.
+public class SessionStateMachineTest {
+    private static final long GRACE_MS = 2_000;
+
+    private static class RecordingEffects implements SessionStateMachine.Effects {
+        final List<String> calls = new ArrayList<>();
+        SessionStateMachine machine;
+        boolean showOverlayOnEnforce;
+
+        @Override
+        public void enterSession(String platform, long now) {
+            calls.add("enter " + platform + " @" + now);
+        }
+
+        @Override
+        public void exitSession(String platform, long endTime, SessionStateMachine.Input cause) {
+            calls.add("exit " + platform + " @" + endTime + " " + cause);
+        }
+
+        @Override
+        public void resumeSession(String platform, long now) {
+            calls.add("resume " + platform + " @" + now);
+        }
+
+        @Override
+        public void enforceLimits(long now) {
+            calls.add("enforce @" + now);
+            if (showOverlayOnEnforce) {
+                machine.onOverlayShown(now);
+            }
+        }
+
+        @Override
+        public void removeOverlay() {
+            calls.add("removeOverlay");
+        }
+
+        @Override
+        public void armGrace(long delayMs) {
+            calls.add("armGrace " + delayMs);
+        }
+
+        @Override
+        public void cancelGrace() {
+            calls.add("cancelGrace");
+        }
+
+        List<String> take() {
+            List<String> taken = new ArrayList<>(calls);
+            calls.clear();
+            return taken;
+        }
+    }
+
+    private final RecordingEffects effects = new RecordingEffects();
+    private final SessionStateMachine machine = new SessionStateMachine(effects, GRACE_MS);
+
+    {
+        effects.machine = machine;
+    }
+
+    @Test
+    public void enterAndLeaveSection() {
+        machine.onContent(Platforms.INSTAGRAM, 100);
+        assertEquals(Arrays.asList("enter instagram @100", "enforce @100"), effects.take());
+        assertEquals(SessionStateMachine.State.CONTENT, machine.getState());
+        assertEquals(Platforms.INSTAGRAM, machine.getPlatform());
+
+        machine.onSectionLeft(Platforms.INSTAGRAM, 900);
+        assertEquals(Arrays.asList("exit instagram @900 SECTION_LEFT"), effects.take());
+        assertFalse(machine.isInContent());
+        assertNull(machine.getPlatform());
+    }
+
+    @Test
+    public void repeatedEventsOnlyEnforce() {
+        machine.onContent(Platforms.YOUTUBE, 0);
+        effects.take();
+        machine.onContent(Platforms.YOUTUBE, 10);
+        machine.onContent(Platforms.YOUTUBE, 20);
+        assertEquals(Arrays.asList("enforce @10", "enforce @20"), effects.take());
+
+        machine.onOtherApp(30);
+        effects.take();
+        // Idle: other apps and transient windows cost nothing
+        machine.onOtherApp(40);
+        machine.onTransientApp(50);
+        machine.onSectionLeft(Platforms.YOUTUBE, 60);
+        machine.onGraceExpired(70);
+        machine.onOverlayDismissed(80);
+        assertTrue(effects.take().isEmpty());
+    }
+
+    @Test
+    public void transientWindowWithinGraceKeepsSession() {
+        machine.onContent(Platforms.INSTAGRAM, 0);
+        effects.take();
+
+        machine.onTransientApp(1_000);
+        assertEquals(Arrays.asList("armGrace " + GRACE_MS), effects.take());
+        assertEquals(SessionStateMachine.State.GRACE, machine.getState());
+        assertTrue(machine.isInContent());
+
+        // More keyboard/system UI events don't extend or re-arm the window
+        machine.onTransientApp(1_500);
+        assertTrue(effects.take().isEmpty());
+
+        machine.onContent(Platforms.INSTAGRAM, 1_800);
+        assertEquals(Arrays.asList("cancelGrace", "enforce @1800"), effects.take());
+        assertEquals(SessionStateMachine.State.CONTENT, machine.getState());
+    }
+
+    @Test
+    public void expiredGraceEndsSessionWhenGraceBegan() {
+        machine.onContent(Platforms.INSTAGRAM, 0);
+        machine.onTransientApp(5_000);
+        effects.take();
+
+        machine.onGraceExpired(7_000);
+        assertEquals(Arrays.asList("exit instagram @5000 GRACE_EXPIRED"), effects.take());
+        assertFalse(machine.isInContent());
+    }
+
+    @Test
+    public void leavingDuringGraceEndsSessionWhenGraceBegan() {
+        machine.onContent(Platforms.YOUTUBE, 0);
+        machine.onTransientApp(3_000);
+        effects.take();
+
+        machine.onOtherApp(3_500);
+        assertEquals(Arrays.asList("cancelGrace", "exit youtube @3000 APP_LEFT"), effects.take());
+    }
+
+    @Test
+    public void platformSwitchExitsThenEnters() {
+        machine.onContent(Platforms.INSTAGRAM, 0);
+        effects.take();
+
+        machine.onContent(Platforms.YOUTUBE, 400);
+        assertEquals(Arrays.asList("exit instagram @400 PLATFORM_SWITCHED", "enter youtube @400", "enforce @400"),
+            effects.take());
+        assertEquals(Platforms.YOUTUBE, machine.getPlatform());
+
+        // The other platform's app outside its section ends the session
+        machine.onSectionLeft(Platforms.INSTAGRAM, 600);
+        assertEquals(Arrays.asList("exit youtube @600 APP_LEFT"), effects.take());
+    }
+
+    @Test
+    public void overlayDismissResumesSameSession() {
+        effects.showOverlayOnEnforce = true;
+        machine.onContent(Platforms.INSTAGRAM, 0);
+        assertEquals(SessionStateMachine.State.OVERLAY, machine.getState());
+        effects.showOverlayOnEnforce = false;
+        effects.take();
+
+        // Still watching behind the overlay: nothing to do
+        machine.onContent(Platforms.INSTAGRAM, 100);
+        machine.onTransientApp(150);
+        assertTrue(effects.take().isEmpty());
+
+        // No new session: the start time is untouched, the thresholds re-arm and are checked
+        machine.onOverlayDismissed(200);
+        assertEquals(Arrays.asList("resume instagram @200", "enforce @200"), effects.take());
+        assertEquals(SessionStateMachine.State.CONTENT, machine.getState());
+
+        machine.onSectionLeft(Platforms.INSTAGRAM, 900);
+        assertEquals(Arrays.asList("exit instagram @900 SECTION_LEFT"), effects.take());
+    }
+
+    @Test
+    public void leavingWithOverlayRemovesIt() {
+        machine.onContent(Platforms.YOUTUBE, 0);
+        machine.onOverlayShown(10);
+        effects.take();
+
+        machine.onOtherApp(50);
+        assertEquals(Arrays.asList("removeOverlay", "exit youtube @50 APP_LEFT"), effects.take());
+        assertFalse(machine.isOverlayShowing());
+    }
+
+    @Test
+    public void overlayShownDuringGraceCancelsIt() {
+        machine.onContent(Platforms.YOUTUBE, 0);
+        machine.onTransientApp(10);
+        effects.take();
+
+        machine.onOverlayShown(20);
+        assertEquals(Arrays.asList("cancelGrace"), effects.take());
+        machine.onOverlayRemoved(30);
+        assertEquals(Arrays.asList("removeOverlay"), effects.take());
+        assertEquals(SessionStateMachine.State.CONTENT, machine.getState());
+    }
+
+    @Test
+    public void fullLimitCrossedBehindHalfOverlayIsEnforcedOnDismiss() {
+        // Enforcement as the service does it: LimitPolicy on today's usage
+        long limitMs = 10_000;
+        boolean[] halfShown = {false};
+        boolean[] limitReached = {false};
+        List<String> shown = new ArrayList<>();
+        SessionStateMachine[] limited = new SessionStateMachine[1];
+        limited[0] = new SessionStateMachine(new RecordingEffects() {
+            @Override
+            public void enforceLimits(long now) {
+                if (limited[0].isOverlayShowing()) return;
+                switch (LimitPolicy.decide(now, limitMs, halfShown[0], limitReached[0])) {
+                    case LimitPolicy.ACTION_SHOW_HALF:
+                        halfShown[0] = true;
+                        shown.add("half @" + now);
+                        limited[0].onOverlayShown(now);
+                        break;
+                    case LimitPolicy.ACTION_REACH_LIMIT:
+                        limitReached[0] = true;
+                        shown.add("limit @" + now);
+                        limited[0].onOverlayShown(now);
+                        break;
+                    case LimitPolicy.ACTION_SHOW_LIMIT:
+                        shown.add("limit @" + now);
+                        limited[0].onOverlayShown(now);
+                        break;
+                }
+            }
+        }, GRACE_MS);
+
+        // Session time doubles as today's usage
+        limited[0].onContent(Platforms.INSTAGRAM, 0);
+        limited[0].onContent(Platforms.INSTAGRAM, 5_000);
+        assertEquals(Arrays.asList("half @5000"), shown);
+
+        // The user leaves the half overlay up past the full limit, then closes it
+        limited[0].onOverlayDismissed(12_000);
+        assertEquals(Arrays.asList("half @5000", "limit @12000"), shown);
+        assertTrue(limited[0].isOverlayShowing());
+        assertTrue(limitReached[0]);
+
+        // No threshold left to arm: the crossed full limit is due immediately
+        assertEquals(0, LimitPolicy.remainingMs(LimitPolicy.THRESHOLD_FULL, 12_000, limitMs, true, false));
+        assertEquals(-1, LimitPolicy.remainingMs(LimitPolicy.THRESHOLD_HALF, 12_000, limitMs, true, false));
+    }
+
+    @Test
+    public void everyExitFromContentEndsInIdle() {
+        for (SessionStateMachine.State state : SessionStateMachine.State.values()) {
+            for (SessionStateMachine.Input input : SessionStateMachine.Input.values()) {
+                int effectBits = SessionStateMachine.effects(state, input);
+                SessionStateMachine.State next = SessionStateMachine.next(state, input);
+                boolean exits = (effectBits & SessionStateMachine.EXIT) != 0;
+                boolean enters = (effectBits & SessionStateMachine.ENTER) != 0;
+                String where = state + " + " + input;
+                // A session only ends if there was one, and only IDLE or a new session follows
+                assertTrue(where, !exits || state != SessionStateMachine.State.IDLE);
+                assertTrue(where, !exits || enters || next == SessionStateMachine.State.IDLE);
+                assertTrue(where, !enters || next == SessionStateMachine.State.CONTENT);
+                // Overlay is only torn down when it was up
+                assertTrue(where, (effectBits & SessionStateMachine.REMOVE_OVERLAY) == 0
+                    || state == SessionStateMachine.State.OVERLAY);
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.detoxie.benchmarks;
+
+import com.detoxie.DetectionRules;
+import com.detoxie.PlatformDetector;
+import com.detoxie.ScreenClassifier;
+import com.detoxie.TreeSnapshot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+// Classification of one window by the shipped YouTube rules (the platform
+// with the most clauses) on synthetic trees. The deciding node, if any, is
+// the last one in breadth-first order, so every screen walks the whole tree.
+//   anchor    - an anchor view id decides
+//   heuristic - a match clause decides
+//   miss      - nothing matches (the common case for non-Shorts screens)
+@State(Scope.Thread)
+public class ClassifierBenchmark {
+    private static final String PACKAGE = "com.google.android.youtube";
+    private static final int BRANCHING = 4;
+    private static final int MAX_DEPTH = 64;
+
+    // Ordinary chrome: ids, labels and descriptions that contain no keyword
+    private static final String[] VIEW_IDS = {
+        PACKAGE + ":id/results", PACKAGE + ":id/toolbar", PACKAGE + ":id/video_title",
+        PACKAGE + ":id/channel_name", null, null,
+    };
+    private static final String[] TEXTS = {
+        "Home", "Subscriptions", "Library", "Never Gonna Give You Up", null, null, null,
+    };
+    private static final String[] DESCRIPTIONS = {
+        "More options", "Search", null, null, null,
+    };
+
+    @Param({"100", "1000", "5000"})
+    public int nodes;
+
+    @Param({"anchor", "heuristic", "miss"})
+    public String screen;
+
+    private PlatformDetector detector;
+    private TreeSnapshot snapshot;
+
+    // The synthetic tree, flattened the way TreeCapture feeds it
+    private int[] parents;
+    private int[] depths;
+    private String[] viewIds;
+    private String[] texts;
+    private String[] descriptions;
+
+    @Setup
+    public void setUp() throws Exception {
+        DetectionRules rules;
+        try (InputStream in = ClassifierBenchmark.class.getResourceAsStream("/detection_rules.json")) {
+            rules = DetectionRules.parse(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        detector = rules.createRegistry().forPackage(PACKAGE);
+        snapshot = new TreeSnapshot(rules.keywords, MAX_DEPTH, nodes);
+
+        parents = new int[nodes];
+        depths = new int[nodes];
+        viewIds = new String[nodes];
+        texts = new String[nodes];
+        descriptions = new String[nodes];
+        parents[0] = -1;
+        for (int i = 0; i < nodes; i++) {
+            if (i > 0) {
+                parents[i] = (i - 1) / BRANCHING;
+                depths[i] = depths[parents[i]] + 1;
+            }
+            viewIds[i] = VIEW_IDS[i % VIEW_IDS.length];
+            texts[i] = TEXTS[i % TEXTS.length];
+            descriptions[i] = DESCRIPTIONS[i % DESCRIPTIONS.length];
+        }
+        int last = nodes - 1;
+        switch (screen) {
+            case "anchor":
+                viewIds[last] = PACKAGE + ":id/reel_recycler";
+                break;
+            case "heuristic":
+                descriptions[last] = "Shorts player";
+                break;
+            case "miss":
+                break;
+            default:
+                throw new IllegalArgumentException(screen);
+        }
+        fill();
+    }
+
+    // Snapshot fill plus classification: the per-event cost minus binder IPC
+    @Benchmark
+    public ScreenClassifier.Result fillAndClassify() {
+        fill();
+        return detector.detect(snapshot);
+    }
+
+    // Classification alone, as when several checks share one snapshot
+    @Benchmark
+    public ScreenClassifier.Result classify() {
+        return detector.detect(snapshot);
+    }
+
+    private void fill() {
+        snapshot.begin();
+        for (int i = 0; i < nodes; i++) {
+            snapshot.appendNode(parents[i], depths[i], false, texts[i], descriptions[i], viewIds[i]);
+        }
+    }
+}
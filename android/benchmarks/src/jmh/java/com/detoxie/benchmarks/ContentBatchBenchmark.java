@@ -0,0 +1,99 @@
+package com.detoxie.benchmarks;
+
+import com.detoxie.ContentBatcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Event map construction: recording a time update (and, for transitions, a
+// status) and flushing it into a map shaped like ContentMonitorModule's
+// ContentBatch payload. HashMap stands in for WritableMap, which needs the
+// React Native runtime.
+@State(Scope.Thread)
+public class ContentBatchBenchmark {
+    private ContentBatcher batcher;
+    private MapWriter writer;
+    private long tick;
+
+    @Setup
+    public void setUp() {
+        batcher = new ContentBatcher(64);
+        writer = new MapWriter();
+        batcher.flush(writer, true);
+    }
+
+    // The steady state while watching: one delta per ticker interval
+    @Benchmark
+    public Map<String, Object> timeUpdate() {
+        tick++;
+        batcher.onTimeUpdate(tick * 1000, 60_000 + tick * 1000, "instagram", tick * 1000, 0);
+        batcher.flush(writer, false);
+        return writer.map;
+    }
+
+    @Benchmark
+    public Map<String, Object> statusTransition() {
+        tick++;
+        batcher.onStatus((tick & 1) == 0 ? "Entered Reels" : "Left Reels", "instagram", 60_000 + tick);
+        batcher.flush(writer, false);
+        return writer.map;
+    }
+
+    // What a reattaching JS context gets
+    @Benchmark
+    public Map<String, Object> fullState() {
+        batcher.flush(writer, true);
+        return writer.map;
+    }
+
+    private static final class MapWriter implements ContentBatcher.Writer {
+        Map<String, Object> map;
+        private List<String> statuses;
+
+        @Override
+        public void beginBatch(long sequence, int fields, ContentBatcher values) {
+            map = new HashMap<>();
+            statuses = new ArrayList<>();
+            map.put("seq", (double) sequence);
+            if ((fields & ContentBatcher.FIELD_PLATFORM) != 0 && values.getPlatform() != null) {
+                map.put("platform", values.getPlatform());
+            }
+            if ((fields & ContentBatcher.FIELD_TOTAL_TIME) != 0) {
+                map.put("totalTimeSpent", values.getTotalTimeMs() / 1000.0);
+            }
+            if ((fields & ContentBatcher.FIELD_SESSION_TIME) != 0) {
+                map.put("currentSessionTime", values.getSessionTimeMs() / 1000.0);
+            }
+            if ((fields & ContentBatcher.FIELD_INSTAGRAM_TODAY) != 0) {
+                map.put("instagramTimeToday", values.getInstagramTodayMs() / 1000.0);
+            }
+            if ((fields & ContentBatcher.FIELD_YOUTUBE_TODAY) != 0) {
+                map.put("youtubeTimeToday", values.getYoutubeTodayMs() / 1000.0);
+            }
+            if ((fields & ContentBatcher.FIELD_SESSION_COUNT) != 0) {
+                map.put("sessionCount", values.getSessionCount());
+            }
+            if ((fields & ContentBatcher.FIELD_LAST_SESSION_DATE) != 0 && values.getLastSessionDate() != null) {
+                map.put("lastSessionDate", values.getLastSessionDate());
+            }
+        }
+
+        @Override
+        public void status(String status) {
+            statuses.add(status);
+        }
+
+        @Override
+        public void endBatch(int droppedStatuses) {
+            map.put("statuses", statuses);
+            map.put("droppedStatuses", droppedStatuses);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.detoxie.benchmarks;
+
+import com.detoxie.DailyCounterStore;
+import com.detoxie.DayClock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+// ensureDailyState runs on every content event and threshold alarm. Compares
+// the DayClock boundary check against formatting the date on each call, which
+// is what the service did before, and measures a real midnight crossing.
+@State(Scope.Thread)
+public class DayRolloverBenchmark {
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+
+    private DayClock dayClock;
+    private DailyCounterStore counters;
+    private long now;
+
+    @Setup
+    public void setUp() {
+        dayClock = new DayClock();
+        counters = new DailyCounterStore();
+        now = System.currentTimeMillis();
+        ensureDailyState();
+    }
+
+    @Benchmark
+    public boolean sameDay() {
+        now++;
+        return ensureDailyState();
+    }
+
+    @Benchmark
+    public boolean sameDayFormatEveryCall() {
+        now++;
+        String today = new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(new Date(now));
+        return counters.rollOverIfNeeded(today);
+    }
+
+    // Every call lands on a new day: the cost paid once per midnight
+    @Benchmark
+    public boolean newDay() {
+        now += DAY_MS;
+        return ensureDailyState();
+    }
+
+    // Mirrors ContentMonitorService.ensureDailyState
+    private boolean ensureDailyState() {
+        if (dayClock.isCurrent(now)) return false;
+        return counters.rollOverIfNeeded(dayClock.refresh(now));
+    }
+}
@@ -0,0 +1,44 @@
+package com.detoxie.benchmarks;
+
+import com.detoxie.DailyCounterStore;
+import com.detoxie.LimitPolicy;
+import com.detoxie.Platforms;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+// The daily gating done on every confirmed content event and checkpoint:
+// crediting time to the counters, deciding which overlay is due and computing
+// the threshold deadlines the scheduler arms.
+@State(Scope.Thread)
+public class LimitPolicyBenchmark {
+    private static final long LIMIT_MS = 30 * 60 * 1000L;
+    private static final long STEP_MS = 1000L;
+
+    private DailyCounterStore counters;
+    private long elapsed;
+
+    @Setup
+    public void setUp() {
+        counters = new DailyCounterStore();
+        counters.rollOverIfNeeded("2025-01-01");
+    }
+
+    @Benchmark
+    public void checkpointAndDecide(Blackhole bh) {
+        counters.addContentTime(Platforms.INSTAGRAM, STEP_MS);
+        // Walk below, across and past both thresholds without ever marking them
+        elapsed = (elapsed + STEP_MS) % (2 * LIMIT_MS);
+        bh.consume(LimitPolicy.decide(elapsed, LIMIT_MS, counters.isHalfShown(), counters.isLimitReached()));
+    }
+
+    @Benchmark
+    public void armDeadlines(Blackhole bh) {
+        elapsed = (elapsed + STEP_MS) % LIMIT_MS;
+        bh.consume(LimitPolicy.remainingMs(LimitPolicy.THRESHOLD_HALF, elapsed, LIMIT_MS, false, false));
+        bh.consume(LimitPolicy.remainingMs(LimitPolicy.THRESHOLD_FULL, elapsed, LIMIT_MS, false, false));
+    }
+}
@@ -3,6 +3,13 @@ import { openDatabase } from './database.config';
 import { TABLES } from './database.tables';
 import SQLite from 'react-native-sqlite-storage';
 
+// Local "yyyy-MM-dd", the day key the native writer uses
+function localDateString(date: Date = new Date()): string {
+    const month = String(date.getMonth() + 1).padStart(2, '0');
+    const day = String(date.getDate()).padStart(2, '0');
+    return `${date.getFullYear()}-${month}-${day}`;
+}
+
 export class DatabaseHelper {
     private db: SQLite.SQLiteDatabase | null = null;
 
@@ -121,54 +128,8 @@ export class DatabaseHelper {
         await this.db.executeSql('DELETE FROM tasks WHERE id = ?', [id]);
     }
 
-    async addUsageSession(
-        duration: number,
-        instagramOpened: string,
-        instagramClosed: string,
-        reelsCount: number = 0
-    ) {
-        if (!this.db) throw new Error('Database not initialized');
-        const now = new Date();
-        const sessionDate = now.toISOString().split('T')[0];
-        const sessionTime = now.toTimeString().split(' ')[0];
-
-        await this.db.executeSql(
-            `INSERT INTO usage_sessions 
-      (session_duration, session_date, session_time, instagram_opened, instagram_closed, reels_count) 
-      VALUES (?, ?, ?, ?, ?, ?)`,
-            [duration, sessionDate, sessionTime, instagramOpened, instagramClosed, reelsCount]
-        );
-
-        await this.updateDailyStats(sessionDate, duration);
-    }
-
-    private async updateDailyStats(date: string, duration: number) {
-        if (!this.db) throw new Error('Database not initialized');
-        const existing = await this.db.executeSql(
-            'SELECT * FROM daily_stats WHERE date = ?',
-            [date]
-        );
-
-        if (existing[0].rows.length > 0) {
-            const current = existing[0].rows.item(0);
-            const total = current.total_duration + duration;
-            const count = current.session_count + 1;
-            const avg = total / count;
-
-            await this.db.executeSql(
-                `UPDATE daily_stats 
-         SET total_duration = ?, session_count = ?, avg_session_duration = ?, updated_at = CURRENT_TIMESTAMP 
-         WHERE date = ?`,
-                [total, count, avg, date]
-            );
-        } else {
-            await this.db.executeSql(
-                `INSERT INTO daily_stats (date, total_duration, session_count, avg_session_duration) 
-         VALUES (?, ?, ?, ?)`,
-                [date, duration, 1, duration]
-            );
-        }
-    }
+    // usage_sessions, daily_stats and platform_daily_stats are written by the
+    // native service (UsageDatabase.java) in batched transactions; JS only reads them.
 
     async getTotalUsageTime(): Promise<number> {
         if (!this.db) throw new Error('Database not initialized');
@@ -190,35 +151,6 @@ export class DatabaseHelper {
 
     // Platform-specific stats methods
 
-    async updatePlatformDailyStats(platform: Platform, duration: number): Promise<void> {
-        if (!this.db) throw new Error('Database not initialized');
-        const today = new Date().toISOString().split('T')[0];
-
-        const existing = await this.db.executeSql(
-            'SELECT * FROM platform_daily_stats WHERE date = ? AND platform = ?',
-            [today, platform]
-        );
-
-        if (existing[0].rows.length > 0) {
-            const current = existing[0].rows.item(0);
-            const total = current.total_duration + duration;
-            const count = current.session_count + 1;
-
-            await this.db.executeSql(
-                `UPDATE platform_daily_stats
-                 SET total_duration = ?, session_count = ?, updated_at = CURRENT_TIMESTAMP
-                 WHERE date = ? AND platform = ?`,
-                [total, count, today, platform]
-            );
-        } else {
-            await this.db.executeSql(
-                `INSERT INTO platform_daily_stats (date, platform, total_duration, session_count)
-                 VALUES (?, ?, ?, ?)`,
-                [today, platform, duration, 1]
-            );
-        }
-    }
-
     async getPlatformDailyStats(date: string): Promise<PlatformDailyStats[]> {
         if (!this.db) throw new Error('Database not initialized');
 
@@ -243,7 +175,7 @@ export class DatabaseHelper {
 
     async getTodayUsageByPlatform(): Promise<Record<Platform, number>> {
         if (!this.db) throw new Error('Database not initialized');
-        const today = new Date().toISOString().split('T')[0];
+        const today = localDateString();
 
         const results = await this.db.executeSql(
             'SELECT platform, total_duration FROM platform_daily_stats WHERE date = ?',
@@ -268,7 +200,7 @@ export class DatabaseHelper {
 
     async getTodayTotalUsage(): Promise<number> {
         if (!this.db) throw new Error('Database not initialized');
-        const today = new Date().toISOString().split('T')[0];
+        const today = localDateString();
 
         const results = await this.db.executeSql(
             'SELECT SUM(total_duration) as total FROM platform_daily_stats WHERE date = ?',
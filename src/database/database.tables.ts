@@ -7,7 +7,8 @@ export const TABLES = [
     instagram_opened TEXT NOT NULL,
     instagram_closed TEXT NOT NULL,
     reels_count INTEGER DEFAULT 0,
-    created_at DATETIME DEFAULT CURRENT_TIMESTAMP
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+    platform TEXT
   )`,
 
   `CREATE TABLE IF NOT EXISTS daily_stats (
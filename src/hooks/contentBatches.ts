@@ -0,0 +1,65 @@
+import { NativeModules, NativeEventEmitter, EmitterSubscription } from 'react-native';
+import { ContentBatch } from '../types';
+
+const { ContentMonitorModule } = NativeModules;
+
+type BatchListener = (batch: ContentBatch) => void;
+
+// One native ContentBatch subscription and one drain, shared by every hook.
+// The module hands its queued statuses to whichever drain runs first, so each
+// hook draining on its own would let one of them miss them. Batches pass a
+// single seq guard: the drain resolves asynchronously and must not overwrite
+// a newer live batch that arrived first.
+const listeners = new Set<BatchListener>();
+let subscription: EmitterSubscription | null = null;
+let lastSeq = 0;
+// Everything applied so far, replayed as one full batch to late subscribers
+let state: ContentBatch | null = null;
+
+const apply = (batch: ContentBatch) => {
+  if (batch.seq <= lastSeq) {
+    return;
+  }
+  lastSeq = batch.seq;
+
+  const { statuses, ...fields } = batch;
+  const lastStatus = statuses.length > 0
+    ? statuses[statuses.length - 1]
+    : state?.statuses[0];
+  state = {
+    ...state,
+    ...fields,
+    full: true,
+    droppedStatuses: 0,
+    statuses: lastStatus !== undefined ? [lastStatus] : [],
+  };
+  listeners.forEach(listener => listener(batch));
+};
+
+// Returns the unsubscribe function. The native side buffers again once the
+// last subscriber leaves; the next subscriber drains it.
+export const subscribeContentBatches = (listener: BatchListener) => {
+  listeners.add(listener);
+  if (state) {
+    listener(state);
+  }
+
+  if (!subscription) {
+    subscription = new NativeEventEmitter(ContentMonitorModule).addListener('ContentBatch', apply);
+
+    // Full native state plus any statuses produced while nobody was listening
+    ContentMonitorModule.drainPendingEvents()
+      .then(apply)
+      .catch((error: unknown) => {
+        console.log('Failed to drain pending native events', error);
+      });
+  }
+
+  return () => {
+    listeners.delete(listener);
+    if (listeners.size === 0 && subscription) {
+      subscription.remove();
+      subscription = null;
+    }
+  };
+};
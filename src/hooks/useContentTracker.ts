@@ -1,33 +1,11 @@
 import { useEffect, useState, useCallback } from 'react';
-import { NativeModules, NativeEventEmitter } from 'react-native';
-import { Platform } from '../types';
+import { NativeModules } from 'react-native';
+import { ContentBatch, Platform } from '../types';
 import { DatabaseHelper } from '../database';
+import { subscribeContentBatches } from './contentBatches';
 
 const { ContentMonitorModule } = NativeModules;
 
-interface ContentEvent {
-  status: string;
-  platform?: Platform;
-  totalTimeSpent?: number;
-}
-
-interface TimeUpdateEvent {
-  currentSessionTime: number;
-  totalTimeSpent: number;
-  platform?: Platform;
-  instagramTimeToday?: number;
-  youtubeTimeToday?: number;
-}
-
-interface StatsUpdateEvent {
-  totalTime: number;
-  sessionCount: number;
-  lastSessionDate: string;
-  platform?: Platform;
-  instagramTimeToday?: number;
-  youtubeTimeToday?: number;
-}
-
 export const useContentTracker = () => {
   const [contentStatus, setContentStatus] = useState('Initializing...');
   const [currentSessionTime, setCurrentSessionTime] = useState(0);
@@ -45,57 +23,30 @@ export const useContentTracker = () => {
   }, []);
 
   useEffect(() => {
-    const eventEmitter = new NativeEventEmitter(ContentMonitorModule);
-
-    const timeUpdateListener = eventEmitter.addListener(
-      'ContentTimeUpdate',
-      (event: TimeUpdateEvent) => {
-        setCurrentSessionTime(event.currentSessionTime);
-        setTotalTimeSpent(event.totalTimeSpent);
-        if (event.platform) {
-          setCurrentPlatform(event.platform);
-        }
-        // Update platform-specific stats from native
-        if (event.instagramTimeToday !== undefined || event.youtubeTimeToday !== undefined) {
-          setPlatformStats({
-            instagram: event.instagramTimeToday || 0,
-            youtube: event.youtubeTimeToday || 0,
-          });
-        }
+    // Every setter runs in the same callback, so React renders each batch once
+    const applyBatch = (batch: ContentBatch) => {
+      if (batch.statuses.length > 0) {
+        setContentStatus(batch.statuses[batch.statuses.length - 1]);
       }
-    );
-
-    const statusListener = eventEmitter.addListener(
-      'ContentEvent',
-      (event: ContentEvent) => {
-        setContentStatus(event.status);
-        if (event.platform) {
-          setCurrentPlatform(event.platform);
-        }
-        if (event.totalTimeSpent !== undefined) {
-          setTotalTimeSpent(event.totalTimeSpent);
-        }
+      if (batch.platform) {
+        setCurrentPlatform(batch.platform);
       }
-    );
-
-    const statsListener = eventEmitter.addListener(
-      'ContentStatsUpdate',
-      (event: StatsUpdateEvent) => {
-        setTotalTimeSpent(event.totalTime);
-        if (event.instagramTimeToday !== undefined || event.youtubeTimeToday !== undefined) {
-          setPlatformStats({
-            instagram: event.instagramTimeToday || 0,
-            youtube: event.youtubeTimeToday || 0,
-          });
-        }
+      if (batch.currentSessionTime !== undefined) {
+        setCurrentSessionTime(batch.currentSessionTime);
+      }
+      if (batch.totalTimeSpent !== undefined) {
+        setTotalTimeSpent(batch.totalTimeSpent);
+      }
+      // Update platform-specific stats from native
+      if (batch.instagramTimeToday !== undefined || batch.youtubeTimeToday !== undefined) {
+        setPlatformStats(prev => ({
+          instagram: batch.instagramTimeToday ?? prev.instagram,
+          youtube: batch.youtubeTimeToday ?? prev.youtube,
+        }));
       }
-    );
-
-    return () => {
-      timeUpdateListener.remove();
-      statusListener.remove();
-      statsListener.remove();
     };
+
+    return subscribeContentBatches(applyBatch);
   }, []);
 
   const initializeDatabase = async () => {
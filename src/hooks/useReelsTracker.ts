@@ -1,18 +1,8 @@
 import { useEffect, useState } from 'react';
-import { NativeModules, NativeEventEmitter, Alert } from 'react-native';
-import { DailyStats, UsageSession } from '../types';
+import { Alert } from 'react-native';
+import { ContentBatch, DailyStats, UsageSession } from '../types';
 import { DatabaseHelper } from '../database';
-
-const { ContentMonitorModule } = NativeModules;
-
-interface ReelsEvent {
-  status: string;
-  totalTimeSpent?: number;
-}
-interface TimeUpdateEvent {
-  currentSessionTime: number;
-  totalTimeSpent: number;
-}
+import { subscribeContentBatches } from './contentBatches';
 
 export const useReelsTracker = () => {
   const [reelsStatus, setReelsStatus] = useState('Initializing...');
@@ -27,24 +17,20 @@ export const useReelsTracker = () => {
   }, []);
 
   useEffect(() => {
-    const eventEmitter = new NativeEventEmitter(ContentMonitorModule);
-
-    const timeUpdateListener = eventEmitter.addListener('ContentTimeUpdate', (event: TimeUpdateEvent) => {
-      setCurrentSessionTime(event.currentSessionTime);
-      setTotalTimeSpent(event.totalTimeSpent);
-    });
-
-    const statusListener = eventEmitter.addListener('ContentEvent', (event: ReelsEvent) => {
-      setReelsStatus(event.status);
-      if (event.totalTimeSpent !== undefined) {
-        setTotalTimeSpent(event.totalTimeSpent);
+    const applyBatch = (batch: ContentBatch) => {
+      if (batch.statuses.length > 0) {
+        setReelsStatus(batch.statuses[batch.statuses.length - 1]);
+      }
+      if (batch.currentSessionTime !== undefined) {
+        setCurrentSessionTime(batch.currentSessionTime);
+      }
+      if (batch.totalTimeSpent !== undefined) {
+        setTotalTimeSpent(batch.totalTimeSpent);
       }
-    });
-
-    return () => {
-      timeUpdateListener.remove();
-      statusListener.remove();
     };
+
+    // Shared with useContentTracker: one drain, one seq guard
+    return subscribeContentBatches(applyBatch);
   }, []);
 
   const initializeDatabase = async () => {
@@ -1,5 +1,5 @@
 import React, { useCallback, useEffect, useState } from 'react';
-import { View, SafeAreaView, ScrollView, Text } from 'react-native';
+import { View, SafeAreaView, ScrollView, Text, NativeModules } from 'react-native';
 import { useFocusEffect } from '@react-navigation/native';
 import { ThemedText } from '../ui/ThemedText';
 import { CircularProgress } from '../components/CircularProgress';
@@ -7,6 +7,13 @@ import { PlatformCard } from '../components/PlatformCard';
 import { useContentTracker } from '../hooks/useContentTracker';
 import { dbHelper } from '../database';
 import { usePermissionStore } from '../store/PermissionStore';
+import { UsageSeries } from '../types';
+
+const { ContentMonitorModule } = NativeModules;
+
+const HISTORY_DAYS = 28;
+const DAY_MS = 24 * 60 * 60 * 1000;
+const CHART_HEIGHT = 96;
 
 const PLATFORM_CONFIG = {
   instagram: {
@@ -23,6 +30,7 @@ function PlatformStatsScreen() {
   const { platformStats, loadPlatformStats } = useContentTracker();
   const { overlayConfig } = usePermissionStore();
   const [limitMinutes, setLimitMinutes] = useState(overlayConfig.timerMinutes || 5);
+  const [history, setHistory] = useState<UsageSeries | null>(null);
 
   const limitSeconds = limitMinutes * 60;
 
@@ -55,6 +63,18 @@ function PlatformStatsScreen() {
     setLimitMinutes(overlayConfig.timerMinutes || 5);
   }, [overlayConfig.timerMinutes]);
 
+  // Daily totals for the last four weeks, straight from the native time series
+  const loadHistory = useCallback(async () => {
+    try {
+      const now = Date.now();
+      const series: UsageSeries = await ContentMonitorModule.getUsageSeries(
+        'day', now - (HISTORY_DAYS - 1) * DAY_MS, now);
+      setHistory(series);
+    } catch (error) {
+      console.error('Error loading usage history:', error);
+    }
+  }, []);
+
   useEffect(() => {
     setLimitMinutes(overlayConfig.timerMinutes || 5);
   }, [overlayConfig.timerMinutes]);
@@ -63,7 +83,8 @@ function PlatformStatsScreen() {
     useCallback(() => {
       loadPlatformStats();
       refreshLimitMinutes();
-    }, [loadPlatformStats, refreshLimitMinutes])
+      loadHistory();
+    }, [loadPlatformStats, refreshLimitMinutes, loadHistory])
   );
 
   const formatTimeDisplay = (seconds: number) => {
@@ -138,9 +159,51 @@ function PlatformStatsScreen() {
             platformKey="youtube"
           />
         </View>
+
+        {/* Last four weeks, one stacked bar per day */}
+        {history && history.start.length > 0 && (
+          <View className="mb-10">
+            <ThemedText className="text-xl text-[#4C4B7E] mb-4">
+              Last {HISTORY_DAYS} Days
+            </ThemedText>
+            <UsageHistoryChart series={history} />
+          </View>
+        )}
       </ScrollView>
     </SafeAreaView>
   );
 }
 
+function UsageHistoryChart({ series }: { series: UsageSeries }) {
+  const totals = series.start.map((_, i) => series.instagram[i] + series.youtube[i]);
+  const maxSeconds = Math.max(60, ...totals);
+  const totalMinutes = Math.round(totals.reduce((sum, t) => sum + t, 0) / 60);
+
+  return (
+    <View className="border-[2px] border-[#efe5d3] rounded-2xl p-4">
+      <View className="flex-row items-end" style={{ height: CHART_HEIGHT }}>
+        {series.start.map((start, i) => (
+          <View key={start} className="flex-1 mx-[1px] justify-end" style={{ height: CHART_HEIGHT }}>
+            <View
+              style={{
+                height: (series.youtube[i] / maxSeconds) * CHART_HEIGHT,
+                backgroundColor: PLATFORM_CONFIG.youtube.color,
+              }}
+            />
+            <View
+              style={{
+                height: (series.instagram[i] / maxSeconds) * CHART_HEIGHT,
+                backgroundColor: PLATFORM_CONFIG.instagram.color,
+              }}
+            />
+          </View>
+        ))}
+      </View>
+      <ThemedText className="text-sm text-gray-500 mt-3">
+        {totalMinutes} min total, peak {Math.round(Math.max(...totals) / 60)} min/day
+      </ThemedText>
+    </View>
+  );
+}
+
 export default PlatformStatsScreen;
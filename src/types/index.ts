@@ -3,9 +3,11 @@ export interface UsageSession {
     session_duration: number;
     session_date: string;
     session_time: string;
+    // Open/close times of the session on any platform; the names predate YouTube
     instagram_opened: string;
     instagram_closed: string;
     reels_count?: number;
+    platform?: Platform | null; // null for rows written before it was recorded
 }
 
 export interface DailyStats {
@@ -30,4 +32,62 @@ export interface PlatformDailyStats {
     platform: Platform;
     total_duration: number;
     session_count: number;
-}
\ No newline at end of file
+}
+// One frame's worth of native tracker changes; only fields that changed are present
+export interface ContentBatch {
+    seq: number;
+    full: boolean;
+    statuses: string[];
+    droppedStatuses: number;
+    platform?: Platform;
+    totalTimeSpent?: number;
+    currentSessionTime?: number;
+    instagramTimeToday?: number;
+    youtubeTimeToday?: number;
+    sessionCount?: number;
+    lastSessionDate?: string;
+}
+
+// Fixed-bucket histogram from ContentMonitorModule.getDiagnostics; counts has one
+// more entry than bounds for values above the last bound
+export interface DiagnosticsHistogram {
+    count: number;
+    mean: number;
+    max: number;
+    p50: number;
+    p99: number;
+    bounds: number[];
+    counts: number[];
+}
+
+export interface ServiceDiagnostics {
+    uptimeMs: number;
+    eventsReceived: number;
+    eventsHandled: number;
+    classifications: number;
+    cacheHits: number;
+    cacheMisses: number;
+    budgetExhausted: number;
+    batchesSent: number;
+    batchesDropped: number;
+    statusesDropped: number;
+    overlaysShown: number;
+    overlayFailures: number;
+    liteOverlaysShown: number;
+    eventsPerSecond: { lastSecond: number; peak: number };
+    eventDispatchUs: DiagnosticsHistogram;
+    eventHandlingUs: DiagnosticsHistogram;
+    classifyUs: DiagnosticsHistogram;
+    nodesVisited: DiagnosticsHistogram;
+    overlayAttachUs: DiagnosticsHistogram;
+    overlayFirstFrameUs: DiagnosticsHistogram;
+    overlayTickUs: DiagnosticsHistogram;
+}
+
+// ContentMonitorModule.getUsageSeries: seconds per platform for each bucket, oldest first
+export interface UsageSeries {
+    resolution: 'minute' | 'hour' | 'day';
+    start: number[];
+    instagram: number[];
+    youtube: number[];
+}